@@ -0,0 +1,219 @@
+package ai2018.group15;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import genius.core.Bid;
+import genius.core.Domain;
+import genius.core.issue.IssueDiscrete;
+import genius.core.issue.Value;
+import genius.core.issue.ValueDiscrete;
+
+/**
+ * Encodes the bids of a domain as small integers. The values of every issue are
+ * numbered once, after which a bid is represented by the index of its value for
+ * every issue. If the number of possible bids fits in a long, a bid can also be
+ * packed into a single long code (mixed radix, the first issue is the least
+ * significant digit). Bid objects only have to be created when a bid is offered.
+ */
+public class BidCodec {
+	private Domain domain;
+	// Issues of the domain, indexed by issue index
+	private IssueDiscrete[] issues;
+	// Values of every issue, indexed by issue index and value index
+	private ValueDiscrete[][] values;
+	// Maps the values of every issue to their value index
+	private List<HashMap<Value, Integer>> valueIndices;
+	// Place value of every issue in a packed code
+	private long[] radix;
+	// Number of possible bids, only valid if packed
+	private long numberOfBids;
+	// Whether a bid fits in a long code
+	private boolean packed;
+
+	public BidCodec(Domain domain) {
+		this.domain = domain;
+		int issueCount = domain.getIssues().size();
+		issues = new IssueDiscrete[issueCount];
+		values = new ValueDiscrete[issueCount][];
+		valueIndices = new ArrayList<HashMap<Value, Integer>>(issueCount);
+		radix = new long[issueCount];
+
+		packed = true;
+		long placeValue = 1;
+		for (int i = 0; i < issueCount; i++) {
+			issues[i] = (IssueDiscrete) domain.getIssues().get(i);
+			values[i] = issues[i].getValues().toArray(new ValueDiscrete[0]);
+			HashMap<Value, Integer> indices = new HashMap<Value, Integer>();
+			for (int v = 0; v < values[i].length; v++) {
+				indices.put(values[i][v], v);
+			}
+			valueIndices.add(indices);
+
+			radix[i] = placeValue;
+			if (packed) {
+				try {
+					placeValue = Math.multiplyExact(placeValue, (long) values[i].length);
+				} catch (ArithmeticException e) { // domain too large, use value indices only
+					packed = false;
+				}
+			}
+		}
+		numberOfBids = packed ? placeValue : -1;
+	}
+
+	public Domain getDomain() {
+		return domain;
+	}
+
+	public int getIssueCount() {
+		return issues.length;
+	}
+
+	public IssueDiscrete getIssue(int issueIndex) {
+		return issues[issueIndex];
+	}
+
+	public int getValueCount(int issueIndex) {
+		return values[issueIndex].length;
+	}
+
+	public ValueDiscrete getValue(int issueIndex, int valueIndex) {
+		return values[issueIndex][valueIndex];
+	}
+
+	/***
+	 * Checks whether bids can be packed into a long code
+	 *
+	 * @return whether the number of possible bids fits in a long
+	 */
+	public boolean isPacked() {
+		return packed;
+	}
+
+	/***
+	 * Returns the number of possible bids in the domain
+	 *
+	 * @return number of possible bids, or -1 if it does not fit in a long
+	 */
+	public long getNumberOfBids() {
+		return numberOfBids;
+	}
+
+	/***
+	 * Returns the index of a value of an issue
+	 *
+	 * @param issueIndex index of the issue in the domain
+	 * @param value      value of the issue
+	 * @return index of the value
+	 */
+	public int valueIndex(int issueIndex, Value value) {
+		return valueIndices.get(issueIndex).get(value);
+	}
+
+	/***
+	 * Writes the value index of every issue of a bid to an array
+	 *
+	 * @param bid    bid to encode
+	 * @param target array of at least the number of issues
+	 * @return target
+	 */
+	public int[] toIndices(Bid bid, int[] target) {
+		for (int i = 0; i < issues.length; i++) {
+			target[i] = valueIndex(i, bid.getValue(issues[i].getNumber()));
+		}
+		return target;
+	}
+
+	/***
+	 * Encodes a bid as a long code, only possible if the domain is packed
+	 *
+	 * @param bid bid to encode
+	 * @return code of the bid
+	 */
+	public long encode(Bid bid) {
+		checkPacked();
+		long code = 0;
+		for (int i = 0; i < issues.length; i++) {
+			code += radix[i] * valueIndex(i, bid.getValue(issues[i].getNumber()));
+		}
+		return code;
+	}
+
+	/***
+	 * Encodes value indices as a long code, only possible if the domain is packed
+	 *
+	 * @param indices value index of every issue
+	 * @return code of the bid
+	 */
+	public long encode(int[] indices) {
+		checkPacked();
+		long code = 0;
+		for (int i = 0; i < issues.length; i++) {
+			code += radix[i] * indices[i];
+		}
+		return code;
+	}
+
+	/***
+	 * Returns the value index of one issue of a long code
+	 *
+	 * @param code       code of the bid
+	 * @param issueIndex index of the issue in the domain
+	 * @return index of the value
+	 */
+	public int valueIndex(long code, int issueIndex) {
+		return (int) ((code / radix[issueIndex]) % values[issueIndex].length);
+	}
+
+	/***
+	 * Writes the value index of every issue of a long code to an array
+	 *
+	 * @param code   code of the bid
+	 * @param target array of at least the number of issues
+	 * @return target
+	 */
+	public int[] toIndices(long code, int[] target) {
+		for (int i = 0; i < issues.length; i++) {
+			target[i] = (int) (code % values[i].length);
+			code /= values[i].length;
+		}
+		return target;
+	}
+
+	/***
+	 * Creates the bid of a long code
+	 *
+	 * @param code code of the bid
+	 * @return bid
+	 */
+	public Bid toBid(long code) {
+		HashMap<Integer, Value> bidValues = new HashMap<Integer, Value>();
+		for (int i = 0; i < issues.length; i++) {
+			bidValues.put(issues[i].getNumber(), values[i][(int) (code % values[i].length)]);
+			code /= values[i].length;
+		}
+		return new Bid(domain, bidValues);
+	}
+
+	/***
+	 * Creates the bid of an array of value indices
+	 *
+	 * @param indices value index of every issue
+	 * @return bid
+	 */
+	public Bid toBid(int[] indices) {
+		HashMap<Integer, Value> bidValues = new HashMap<Integer, Value>();
+		for (int i = 0; i < issues.length; i++) {
+			bidValues.put(issues[i].getNumber(), values[i][indices[i]]);
+		}
+		return new Bid(domain, bidValues);
+	}
+
+	private void checkPacked() {
+		if (!packed) {
+			throw new IllegalStateException("Domain is too large to pack bids into a long");
+		}
+	}
+}
@@ -1,12 +1,15 @@
 package ai2018.group15;
 
-import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 import genius.core.bidding.BidDetails;
-import genius.core.boaframework.SortedOutcomeSpace;
 
 public class BidSelector {
+	// Smallest step of the window over empty utilities, smaller steps are replaced
+	// by a jump to the next bid, so an empty window takes at most 1 / MIN_SLIDE
+	// steps to cross the utility range
+	private static final double MIN_SLIDE = 0.001;
+
 	// Sliding window
 	private SlidingWindow sw;
 	// Max sliding window size
@@ -22,22 +25,32 @@ public class BidSelector {
 	// Increase amount, how much utility to move up
 	private double increaseAmount;
 	// Outcome space
-	private SortedOutcomeSpace outcomespace;
+	private OutcomeIndex outcomespace;
+	// Outcome space if it is sorted, used to skip empty windows
+	private SortedOutcomeIndex sortedspace;
 
-	// Bid Details List
-	private List<BidDetails> BidList;
+	// Bids in the sliding window
+	private BidWindow BidList;
 
-	private Random rng;
+	private SplittableRandom rng;
 
-	public BidSelector(SortedOutcomeSpace ocs, double maxWindowSize, int maxBids, double maxConcession,
-			double maxIncrease) {
+	public BidSelector(OutcomeIndex ocs, double maxWindowSize, int maxBids, double maxConcession,
+			double maxIncrease, SplittableRandom random) {
 		outcomespace = ocs;
-		sw = new SlidingWindow(outcomespace.getMaxBidPossible().getMyUndiscountedUtil(), maxWindowSize);
-		BidList = outcomespace.getBidsinRange(sw.getRange());
+		if (ocs instanceof SortedOutcomeIndex) {
+			// Buckets as narrow as the smallest move of the window, so only a few outcomes
+			// are searched for a bound of the window
+			double bucketWidth = Math.min(maxWindowSize, Math.min(maxConcession, maxIncrease));
+			sortedspace = new BucketedOutcomeIndex((SortedOutcomeIndex) ocs, bucketWidth);
+			outcomespace = sortedspace;
+		}
+		sw = new SlidingWindow(outcomespace.getMaxUtility(), maxWindowSize);
+		BidList = new BidWindow(maxBids);
+		updateBidList();
 		maxBidCount = maxBids;
 		maxSwSize = maxWindowSize;
 		maxConcessionAmount = maxConcession;
-		rng = new Random();
+		rng = random;
 		maxIncreaseAmount = maxIncrease;
 	}
 
@@ -47,7 +60,7 @@ public class BidSelector {
 	 * @return best ranked bid
 	 */
 	public BidDetails getFirstBid() {
-		return BidList.get(0);
+		return BidList.getBidDetails(0);
 	}
 
 	// Get lower bound of sliding window
@@ -73,22 +86,50 @@ public class BidSelector {
 	 * @return random bid from the bid list
 	 */
 	private BidDetails getRandomBid() {
-		return BidList.get(rng.nextInt(Math.min(BidList.size(), maxBidCount)));
+		return BidList.getBidDetails(rng.nextInt(Math.min(BidList.size(), maxBidCount)));
 	}
 
-	// Slide the window upwards: increase utility
+	/***
+	 * Slide the window upwards: increase utility. If the window is empty it keeps
+	 * sliding by the same amount until it holds a bid. For a sorted outcome space
+	 * the next bid above the window is looked up once, and the window is only
+	 * queried again when it reaches that bid. An amount below MIN_SLIDE jumps to
+	 * that bid instead, or slides by MIN_SLIDE if the outcome space is not sorted.
+	 */
 	private void increaseUtility() {
-		sw.slideUp(Math.min(increaseAmount, maxIncreaseAmount));
-
-		updateBidList();
-		if (isBidListEmpty()) {
-			if (sw.getUpper() < 1) { // if possible to slide window up more do it
-				increaseUtility();
-			} else {
-				sw.setUpper(outcomespace.getMaxBidPossible().getMyUndiscountedUtil()); // set upper to worst
-				sw.setLower(outcomespace.getMaxBidPossible().getMyUndiscountedUtil()); // set lower to worst
+		double delta = Math.min(increaseAmount, maxIncreaseAmount);
+		// Utility of the lowest bid above the window
+		double next = Double.NaN;
+		while (true) {
+			sw.slideUp(delta);
+			if (sw.getUpper() < next && sw.getUpper() < 1) {
+				continue; // the window is still below the next bid, so it is empty
+			}
+			updateBidList();
+			if (!isBidListEmpty()) {
+				return;
+			}
+			if (sw.getUpper() >= 1) { // not possible to slide window up more
+				break;
+			}
+			if (sortedspace != null) {
+				// If there is none, only the window at the top can hold a bid
+				int index = sortedspace.indexBelow(sw.getLower()) - 1;
+				next = index < 0 ? Double.POSITIVE_INFINITY : sortedspace.getUtility(index);
+			}
+			if (delta < MIN_SLIDE) { // the window would not move, or cross a gap slowly
+				if (sortedspace == null) {
+					delta = MIN_SLIDE;
+				} else if (Double.isInfinite(next)) {
+					break;
+				} else {
+					delta = next - sw.getUpper();
+				}
 			}
 		}
+		sw.setUpper(outcomespace.getMaxUtility()); // set upper to best
+		sw.setLower(outcomespace.getMaxUtility()); // set lower to best
+		updateBidList();
 	}
 
 	/***
@@ -97,7 +138,7 @@ public class BidSelector {
 	 * @return whether bid list is empty
 	 */
 	private boolean isBidListEmpty() {
-		if (BidList.size() == 0) {
+		if (BidList.isEmpty()) {
 			return true;
 		}
 		return false;
@@ -115,18 +156,47 @@ public class BidSelector {
 		return false;
 	}
 
-	// Slide the window downwards: perform concession
+	/***
+	 * Slide the window downwards: perform concession. If the window is empty it
+	 * keeps sliding by the same amount until it holds a bid, for a sorted outcome
+	 * space the window is only queried again when it reaches the next bid below.
+	 * An amount below MIN_SLIDE jumps to that bid instead, or slides by MIN_SLIDE
+	 * if the outcome space is not sorted.
+	 */
 	private void performConcession() {
-		sw.slideDown(Math.min(concessionAmount, maxConcessionAmount));
-		updateBidList();
-		if (isBidListEmpty()) {
-			if (sw.getLower() > 0) { // if possible to slide window down more do it
-				performConcession();
-			} else {
-				sw.setUpper(outcomespace.getMinBidPossible().getMyUndiscountedUtil()); // set upper to worst
-				sw.setLower(outcomespace.getMinBidPossible().getMyUndiscountedUtil()); // set lower to worst
+		double delta = Math.min(concessionAmount, maxConcessionAmount);
+		// Utility of the highest bid below the window
+		double next = Double.NaN;
+		while (true) {
+			sw.slideDown(delta);
+			if (sw.getLower() > next && sw.getLower() > 0) {
+				continue; // the window is still above the next bid, so it is empty
+			}
+			updateBidList();
+			if (!isBidListEmpty()) {
+				return;
+			}
+			if (sw.getLower() <= 0) { // not possible to slide window down more
+				break;
+			}
+			if (sortedspace != null) {
+				// If there is none, only the window at the bottom can hold a bid
+				int index = sortedspace.indexAtOrBelow(sw.getUpper());
+				next = index == sortedspace.size() ? Double.NEGATIVE_INFINITY : sortedspace.getUtility(index);
+			}
+			if (delta < MIN_SLIDE) { // the window would not move, or cross a gap slowly
+				if (sortedspace == null) {
+					delta = MIN_SLIDE;
+				} else if (Double.isInfinite(next)) {
+					break;
+				} else {
+					delta = sw.getLower() - next;
+				}
 			}
 		}
+		sw.setUpper(outcomespace.getMinUtility()); // set upper to worst
+		sw.setLower(outcomespace.getMinUtility()); // set lower to worst
+		updateBidList();
 	}
 
 	/***
@@ -139,6 +209,7 @@ public class BidSelector {
 		switch (action) {
 		case 1:
 			sw.setLower(sw.getUpper() - maxSwSize);
+			updateBidList();
 			break;
 		case 2:
 			concessionAmount = Math.abs(newDifference);
@@ -148,13 +219,15 @@ public class BidSelector {
 			increaseAmount = Math.abs(newDifference);
 			increaseUtility();
 			break;
+		default:
+			updateBidList();
+			break;
 		}
-		updateBidList();
 	}
 
-	// Updates the list of bids for a new range
+	// Updates the window of bids for a new range
 	private void updateBidList() {
-		BidList = outcomespace.getBidsinRange(sw.getRange());
+		outcomespace.query(sw.getLower(), sw.getUpper(), BidList);
 	}
 
 }
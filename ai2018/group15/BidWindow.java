@@ -0,0 +1,134 @@
+package ai2018.group15;
+
+import genius.core.bidding.BidDetails;
+
+/**
+ * View on the bids of an OutcomeIndex within a utility range, from high to low
+ * utility. For a SortedOutcomeIndex a window only holds an offset and a length,
+ * for a LazyOutcomeSpace it holds the codes and utilities of the generated
+ * bids, or their value indices if the domain is too large to pack a bid into a
+ * code. A window is reused between queries so looking up a window does not
+ * create any objects.
+ */
+public class BidWindow {
+	private SortedOutcomeIndex index;
+	// Handle of the first bid of the window
+	private int offset;
+	// Number of bids in the window
+	private int length;
+
+	// Codec, codes and utilities of generated bids
+	private BidCodec codec;
+	private long[] codes;
+	private double[] utilities;
+	// Value indices of generated bids of domains that are not packed, created on
+	// first use
+	private int[][] indices;
+	// Whether the bids of the window are generated
+	private boolean generated;
+
+	public BidWindow() {
+		this(0);
+	}
+
+	/***
+	 * Creates a window which can hold a number of generated bids
+	 * 
+	 * @param capacity maximum number of generated bids
+	 */
+	public BidWindow(int capacity) {
+		codes = new long[capacity];
+		utilities = new double[capacity];
+	}
+
+	void setRange(SortedOutcomeIndex index, int offset, int length) {
+		this.index = index;
+		this.offset = offset;
+		this.length = length;
+		generated = false;
+	}
+
+	void setGenerated(BidCodec codec, int length) {
+		this.codec = codec;
+		this.offset = 0;
+		this.length = length;
+		generated = true;
+	}
+
+	int getCapacity() {
+		return codes.length;
+	}
+
+	long[] getCodeBuffer() {
+		return codes;
+	}
+
+	double[] getUtilityBuffer() {
+		return utilities;
+	}
+
+	int[][] getIndexBuffer(int issueCount) {
+		if (indices == null || (indices.length > 0 && indices[0].length != issueCount)) {
+			indices = new int[codes.length][issueCount];
+		}
+		return indices;
+	}
+
+	public int size() {
+		return length;
+	}
+
+	public boolean isEmpty() {
+		return length == 0;
+	}
+
+	public double getUtility(int i) {
+		if (generated) {
+			return utilities[i];
+		}
+		return index.getUtility(offset + i);
+	}
+
+	/***
+	 * Checks whether the bids of the window have a long code, which is not the
+	 * case for generated bids of a domain that is not packed
+	 *
+	 * @return whether getCode can be used
+	 */
+	public boolean hasCodes() {
+		return !generated || codec.isPacked();
+	}
+
+	public long getCode(int i) {
+		if (!hasCodes()) {
+			throw new IllegalStateException("Bids of the window have no code, use getIndices");
+		}
+		if (generated) {
+			return codes[i];
+		}
+		return index.getCode(offset + i);
+	}
+
+	/***
+	 * Writes the value index of every issue of a bid of the window to an array
+	 *
+	 * @param i      position of the bid in the window
+	 * @param target array of at least the number of issues
+	 * @return target
+	 */
+	public int[] getIndices(int i, int[] target) {
+		if (generated && !codec.isPacked()) {
+			System.arraycopy(indices[i], 0, target, 0, indices[i].length);
+			return target;
+		}
+		BidCodec bidCodec = generated ? codec : index.getCodec();
+		return bidCodec.toIndices(getCode(i), target);
+	}
+
+	public BidDetails getBidDetails(int i) {
+		if (generated) {
+			return new BidDetails(codec.isPacked() ? codec.toBid(codes[i]) : codec.toBid(indices[i]), utilities[i]);
+		}
+		return index.getBidDetails(offset + i);
+	}
+}
@@ -0,0 +1,143 @@
+package ai2018.group15;
+
+import genius.core.bidding.BidDetails;
+
+/**
+ * Sorted outcome index with a directory of fixed width utility buckets. For
+ * every bucket boundary the directory holds the position of the first outcome
+ * at or below it, so a utility is located in its bucket with one division and
+ * only the outcomes within that bucket are searched. The width is chosen by
+ * the user of the index, such as the smallest step of a sliding window, so a
+ * window query costs a constant number of lookups instead of a binary search
+ * over the whole outcome space.
+ */
+public class BucketedOutcomeIndex implements SortedOutcomeIndex {
+	// Largest number of buckets, the width is increased for small widths
+	public static final int MAX_BUCKETS = 1 << 16;
+
+	private SortedOutcomeIndex index;
+	// Utility of the upper boundary of the first bucket
+	private double top;
+	// Width of a bucket
+	private double width;
+	// Position of the first outcome at or below the upper boundary of every bucket,
+	// followed by the size of the index
+	private int[] starts;
+
+	/***
+	 * Creates the bucket directory of an index
+	 *
+	 * @param index sorted outcome index
+	 * @param width width of a bucket, the width of the utility range of the index
+	 *              is used if it is not above 0
+	 */
+	public BucketedOutcomeIndex(SortedOutcomeIndex index, double width) {
+		this.index = index;
+		top = index.getMaxUtility();
+		double range = top - index.getMinUtility();
+		if (!(width > 0) || range / width >= MAX_BUCKETS) {
+			width = range > 0 ? range / (MAX_BUCKETS - 1) : 1;
+		}
+		this.width = width;
+
+		int buckets = (int) (range / width) + 1;
+		starts = new int[buckets + 1];
+		for (int b = 0; b < buckets; b++) {
+			starts[b] = index.indexAtOrBelow(top - b * width);
+		}
+		starts[buckets] = index.size();
+	}
+
+	/***
+	 * Returns the bucket of a utility
+	 *
+	 * @param utility utility within the range of the index
+	 * @return index of the bucket
+	 */
+	private int getBucket(double utility) {
+		return Math.min((int) ((top - utility) / width), starts.length - 2);
+	}
+
+	@Override
+	public BidCodec getCodec() {
+		return index.getCodec();
+	}
+
+	@Override
+	public int size() {
+		return index.size();
+	}
+
+	@Override
+	public double getUtility(int position) {
+		return index.getUtility(position);
+	}
+
+	@Override
+	public long getCode(int position) {
+		return index.getCode(position);
+	}
+
+	@Override
+	public BidDetails getBidDetails(int position) {
+		return index.getBidDetails(position);
+	}
+
+	@Override
+	public double getMaxUtility() {
+		return top;
+	}
+
+	@Override
+	public double getMinUtility() {
+		return index.getMinUtility();
+	}
+
+	@Override
+	public int indexAtOrBelow(double utility) {
+		if (utility >= top) {
+			return 0;
+		}
+		// The neighbouring buckets are searched as well, in case the division rounds
+		// the utility into the wrong bucket
+		int bucket = getBucket(utility);
+		int low = starts[Math.max(bucket - 1, 0)];
+		int high = starts[Math.min(bucket + 2, starts.length - 1)];
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (index.getUtility(mid) <= utility) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	@Override
+	public int indexBelow(double utility) {
+		if (utility > top) {
+			return 0;
+		}
+		int bucket = getBucket(utility);
+		int low = starts[Math.max(bucket - 1, 0)];
+		int high = starts[Math.min(bucket + 2, starts.length - 1)];
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (index.getUtility(mid) < utility) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	@Override
+	public void query(double lower, double upper, BidWindow window) {
+		int start = indexAtOrBelow(upper);
+		int end = indexBelow(lower);
+		// The window reads the bids from the index itself
+		window.setRange(index, start, Math.max(0, end - start));
+	}
+}
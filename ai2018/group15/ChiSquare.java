@@ -0,0 +1,75 @@
+package ai2018.group15;
+
+/**
+ * Chi-square goodness of fit test at a significance level of 0.05, computed
+ * directly on frequency counts. Instead of a p-value, the statistic is compared
+ * with the critical value of its degrees of freedom, which gives the same
+ * decision as comparing the p-value of commons-math's ChiSquareTestImpl with
+ * 0.05 without evaluating the incomplete gamma function or creating arrays.
+ */
+public class ChiSquare {
+	// Critical values of the chi-square distribution at 0.05 for 1 to 30 degrees
+	// of freedom
+	private static final double[] CRITICAL_VALUES = { 3.841459, 5.991465, 7.814728, 9.487729, 11.070498, 12.591587,
+			14.067140, 15.507313, 16.918978, 18.307038, 19.675138, 21.026070, 22.362032, 23.684791, 24.995790,
+			26.296228, 27.587112, 28.869299, 30.143527, 31.410433, 32.670573, 33.924438, 35.172462, 36.415029,
+			37.652484, 38.885139, 40.113272, 41.337138, 42.556968, 43.772972 };
+	// Upper 0.05 quantile of the standard normal distribution
+	private static final double Z = 1.6448536;
+
+	/***
+	 * Returns the critical value of the chi-square distribution at 0.05. Beyond
+	 * the table the Wilson-Hilferty approximation is used, which is accurate to
+	 * about 0.01% for more than 30 degrees of freedom.
+	 *
+	 * @param degreesOfFreedom degrees of freedom, at least 1
+	 * @return critical value
+	 */
+	public static double criticalValue(int degreesOfFreedom) {
+		if (degreesOfFreedom <= CRITICAL_VALUES.length) {
+			return CRITICAL_VALUES[degreesOfFreedom - 1];
+		}
+		double a = 2.0 / (9.0 * degreesOfFreedom);
+		double b = 1 - a + Z * Math.sqrt(a);
+		return degreesOfFreedom * b * b * b;
+	}
+
+	/***
+	 * Tests whether observed counts differ significantly from expected counts.
+	 * Only the values with an expected count above 0 are compared. As in
+	 * commons-math, the expected counts are rescaled to the total of the observed
+	 * counts if the totals differ.
+	 *
+	 * @param expected expected count of every value
+	 * @param observed observed count of every value
+	 * @return whether the null hypothesis is rejected, false if fewer than two
+	 *         values are compared
+	 */
+	public static boolean isSignificant(int[] expected, int[] observed) {
+		int categories = 0;
+		long sumExpected = 0;
+		long sumObserved = 0;
+		for (int v = 0; v < expected.length; v++) {
+			if (expected[v] > 0) {
+				categories++;
+				sumExpected += expected[v];
+				sumObserved += observed[v];
+			}
+		}
+		if (categories < 2) {
+			return false;
+		}
+
+		double ratio = (double) sumObserved / sumExpected;
+		double statistic = 0;
+		for (int v = 0; v < expected.length; v++) {
+			if (expected[v] > 0) {
+				double expectedCount = ratio * expected[v];
+				double deviation = observed[v] - expectedCount;
+				statistic += deviation * deviation / expectedCount;
+			}
+		}
+		// A statistic of NaN (no observed counts at all) rejects, as its p-value does
+		return !(statistic < criticalValue(categories - 1));
+	}
+}
@@ -0,0 +1,130 @@
+package ai2018.group15;
+
+import java.util.Locale;
+
+/**
+ * Latency histograms of the components of the agent during one session. The
+ * metrics are only recorded if the system property group15.metrics is set to
+ * true; otherwise timing a call costs a check of a constant, which the JIT
+ * removes. Next to the latencies, the metrics keep the context of the calls:
+ * the number of rounds, the size of the bid windows and the generation of the
+ * opponent model. If the JVM has Java Flight Recorder, every round is also
+ * emitted as a RoundEvents event.
+ */
+public class ComponentMetrics {
+	// Whether metrics are recorded, fixed when the class is loaded
+	public static final boolean ENABLED = Boolean.getBoolean("group15.metrics");
+
+	public static final int DETERMINE_NEXT_BID = 0;
+	public static final int DETERMINE_ACCEPTABILITY = 1;
+	public static final int UPDATE_MODEL = 2;
+	public static final int GET_BID = 3;
+	public static final int ESTIMATE_UTILITY = 4;
+	public static final int OUTCOME_SPACE = 5;
+
+	private static final String[] NAMES = { "determineNextBid", "determineAcceptability", "updateModel", "getBid",
+			"estimateUtility", "outcomeSpace" };
+
+	private LatencyHistogram[] histograms = new LatencyHistogram[NAMES.length];
+
+	// Sizes of the bid windows passed to the opponent model strategy
+	private long windowCount;
+	private long windowTotal;
+	private int windowMax;
+	// Size of the last window of the current round, 0 if none was scored
+	private int roundWindow;
+	// Generation of the opponent model
+	private int modelGeneration;
+
+	public ComponentMetrics() {
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] = new LatencyHistogram();
+		}
+	}
+
+	/***
+	 * Starts timing a call
+	 *
+	 * @return start time in nanoseconds, or 0 if metrics are disabled
+	 */
+	public static long start() {
+		return ENABLED ? System.nanoTime() : 0;
+	}
+
+	/***
+	 * Records the latency of a call
+	 *
+	 * @param component component which was called
+	 * @param start     start time returned by start()
+	 */
+	public void record(int component, long start) {
+		if (ENABLED) {
+			histograms[component].record(System.nanoTime() - start);
+		}
+	}
+
+	/***
+	 * Records the latency of a round of the bidding strategy, and emits the round
+	 * as a flight recorder event
+	 *
+	 * @param start start time returned by start()
+	 */
+	public void recordRound(long start) {
+		if (ENABLED) {
+			long latency = System.nanoTime() - start;
+			LatencyHistogram histogram = histograms[DETERMINE_NEXT_BID];
+			histogram.record(latency);
+			RoundEvents.emit((int) histogram.getCount(), roundWindow, modelGeneration, latency);
+			roundWindow = 0;
+		}
+	}
+
+	/***
+	 * Records the size of a bid window
+	 *
+	 * @param size number of bids in the window
+	 */
+	public void recordWindow(int size) {
+		if (ENABLED) {
+			windowCount++;
+			windowTotal += size;
+			windowMax = Math.max(windowMax, size);
+			roundWindow = size;
+		}
+	}
+
+	public void setModelGeneration(int generation) {
+		modelGeneration = generation;
+	}
+
+	public LatencyHistogram getHistogram(int component) {
+		return histograms[component];
+	}
+
+	/***
+	 * Summarizes the metrics of the session, one line per component
+	 *
+	 * @return summary, or an empty string if metrics are disabled
+	 */
+	public String summary() {
+		if (!ENABLED) {
+			return "";
+		}
+		StringBuilder summary = new StringBuilder();
+		summary.append(String.format(Locale.ROOT,
+				"rounds %d, window size mean %.1f max %d, model generation %d%n",
+				histograms[DETERMINE_NEXT_BID].getCount(), windowCount == 0 ? 0.0 : (double) windowTotal / windowCount,
+				windowMax, modelGeneration));
+		for (int i = 0; i < histograms.length; i++) {
+			LatencyHistogram histogram = histograms[i];
+			if (histogram.getCount() == 0) {
+				continue;
+			}
+			summary.append(String.format(Locale.ROOT,
+					"%-24s calls %8d  mean %10.1f us  p50 %10.1f us  p99 %10.1f us  max %10.1f us%n", NAMES[i],
+					histogram.getCount(), histogram.getMean() / 1e3, histogram.getPercentile(50) / 1e3,
+					histogram.getPercentile(99) / 1e3, histogram.getMax() / 1e3));
+		}
+		return summary.toString();
+	}
+}
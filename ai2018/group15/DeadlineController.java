@@ -0,0 +1,138 @@
+package ai2018.group15;
+
+import genius.core.boaframework.NegotiationSession;
+
+/**
+ * Decides when the agent switches to its endgame, based on the number of rounds
+ * that are left instead of a fixed fraction of the time. The controller
+ * measures how long our own turns take and how long the opponent takes to
+ * respond, in normalized time. The number of remaining rounds is the remaining
+ * time divided by the length of a round. Until a round has been measured, the
+ * fixed cut-over time is used.
+ */
+public class DeadlineController {
+	// Cut-over time used until the length of a round is known
+	public static final double DEFAULT_CUTOVER_TIME = 0.99;
+	// Weight of the most recent round in the average round lengths
+	private static final double SMOOTHING = 0.2;
+
+	private NegotiationSession negotiationSession;
+
+	// Start and end time of our last turn, -1 if there was none
+	private double turnStart = -1;
+	private double turnEnd = -1;
+
+	// Average length of our own turns and of the responses of the opponent
+	private double ownLatency;
+	private double opponentLatency;
+	// Length of the last round
+	private double lastRound;
+	// Amount of rounds that have been measured
+	private int measuredRounds;
+
+	public DeadlineController(NegotiationSession negotiationSession) {
+		this.negotiationSession = negotiationSession;
+	}
+
+	/***
+	 * Marks the start of our turn, the round since the start of our previous turn
+	 * is measured
+	 */
+	public void beginTurn() {
+		double time = negotiationSession.getTime();
+		if (turnStart >= 0 && turnEnd >= turnStart && time >= turnEnd) {
+			double own = turnEnd - turnStart;
+			double opponent = time - turnEnd;
+			if (measuredRounds == 0) {
+				ownLatency = own;
+				opponentLatency = opponent;
+			} else {
+				ownLatency += SMOOTHING * (own - ownLatency);
+				opponentLatency += SMOOTHING * (opponent - opponentLatency);
+			}
+			lastRound = own + opponent;
+			measuredRounds++;
+		}
+		turnStart = time;
+	}
+
+	/***
+	 * Marks the end of our turn. May be called more than once per turn, the last
+	 * call counts.
+	 */
+	public void endTurn() {
+		turnEnd = negotiationSession.getTime();
+	}
+
+	/***
+	 * Estimates the length of a round, taking the larger of the average and the
+	 * last round so a sudden slowdown is taken into account immediately
+	 *
+	 * @return length of a round in normalized time, or 0 if it is not known yet
+	 */
+	public double getRoundLength() {
+		if (measuredRounds == 0) {
+			return 0;
+		}
+		return Math.max(ownLatency + opponentLatency, lastRound);
+	}
+
+	/***
+	 * Estimates the number of rounds that are left in the session
+	 *
+	 * @return number of remaining rounds, or infinity if it is not known yet
+	 */
+	public double getRemainingRounds() {
+		double roundLength = getRoundLength();
+		if (roundLength <= 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return Math.max(0, 1 - negotiationSession.getTime()) / roundLength;
+	}
+
+	/***
+	 * Checks whether at most a number of rounds are left. Before the length of a
+	 * round is known, the fixed cut-over time is used instead.
+	 *
+	 * @param rounds number of rounds
+	 * @return whether the session will end within the number of rounds
+	 */
+	public boolean isWithinRounds(double rounds) {
+		return isWithinRounds(rounds, DEFAULT_CUTOVER_TIME);
+	}
+
+	/***
+	 * Checks whether at most a number of rounds are left. Before the length of a
+	 * round is known, a cut-over time is used instead.
+	 *
+	 * @param rounds      number of rounds
+	 * @param cutoverTime normalized time used until a round has been measured
+	 * @return whether the session will end within the number of rounds
+	 */
+	public boolean isWithinRounds(double rounds, double cutoverTime) {
+		if (measuredRounds == 0) {
+			return negotiationSession.getTime() > cutoverTime;
+		}
+		return getRemainingRounds() <= rounds;
+	}
+
+	/***
+	 * Returns how far the session is through its last rounds, from 0 when the
+	 * number of rounds is left to 1 at the deadline. Before the length of a round
+	 * is known, the progress through the time after a cut-over time is used
+	 * instead.
+	 *
+	 * @param rounds      number of rounds
+	 * @param cutoverTime normalized time used until a round has been measured
+	 * @return progress in [0, 1]
+	 */
+	public double getProgress(double rounds, double cutoverTime) {
+		double progress;
+		if (measuredRounds == 0) {
+			progress = (negotiationSession.getTime() - cutoverTime) / (1 - cutoverTime);
+		} else {
+			progress = 1 - getRemainingRounds() / rounds;
+		}
+		return Math.max(0, Math.min(1, progress));
+	}
+}
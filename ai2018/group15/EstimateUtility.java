@@ -1,15 +1,11 @@
 package ai2018.group15;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import genius.core.Bid;
-import genius.core.Domain;
 import genius.core.boaframework.NegotiationSession;
-import genius.core.issue.Value;
-import genius.core.issue.ValueDiscrete;
-import genius.core.uncertainty.AdditiveUtilitySpaceFactory;
 import genius.core.utility.AbstractUtilitySpace;
 
 /* 
@@ -18,10 +14,28 @@ import genius.core.utility.AbstractUtilitySpace;
 */
 public class EstimateUtility {
 
+	// Number of bid pairs below which a part of the ranking is not split further
+	private static final int CHUNK_SIZE = 1024;
+
 	NegotiationSession negotiationSession;
+	BidCodec codec;
 
 	public EstimateUtility(NegotiationSession negoSession) {
+		this(negoSession, new BidCodec(negoSession.getDomain()));
+	}
+
+	public EstimateUtility(NegotiationSession negoSession, BidCodec codec) {
 		this.negotiationSession = negoSession;
+		this.codec = codec;
+	}
+
+	/**
+	 * Estimates the utility space, see getUtilityTables.
+	 * 
+	 * @return estimated utility space based on the bid ranking
+	 */
+	public AbstractUtilitySpace getUtilitySpace() {
+		return getUtilityTables().toUtilitySpace(codec);
 	}
 
 	/**
@@ -35,63 +49,127 @@ public class EstimateUtility {
 	 * this value. For each value, the final weight is updated with a value relative
 	 * to the total of the weights.
 	 * 
-	 * @return estimated utility space based on the bid ranking
+	 * @return estimated weights and value utilities based on the bid ranking
 	 */
 
-	public AbstractUtilitySpace getUtilitySpace() {
-		Domain domain = negotiationSession.getDomain();
-		AdditiveUtilitySpaceFactory factory = new AdditiveUtilitySpaceFactory(domain);
+	public UtilityTables getUtilityTables() {
 		List<Bid> bidOrder = negotiationSession.getUserModel().getBidRanking().getBidOrder();
+		int issueCount = codec.getIssueCount();
+		int bidCount = bidOrder.size();
+
+		// The weights of the issues and the values are accumulated in one flat array,
+		// the values of issue j start at valueOffsets[j]
+		int[] valueOffsets = new int[issueCount];
+		int accumulatorSize = issueCount;
+		for (int j = 0; j < issueCount; j++) {
+			valueOffsets[j] = accumulatorSize;
+			accumulatorSize += codec.getValueCount(j);
+		}
 
-		double[] weights = new double[domain.getIssues().size()]; // Get current weights of the Issues
-
-		for (int i = 0; i < bidOrder.size() - 1; i++) { // Reweigh issues based on bid pairs
-			for (int j = 1; j < domain.getIssues().size() + 1; j++) {
-				Value val1 = bidOrder.get(i).getValue(j);
-				Value val2 = bidOrder.get(i + 1).getValue(j);
-
-				if (val1.equals(val2)) {
-					weights[j - 1] += (((double) i) + 1) / bidOrder.size(); // Add weight based on rank
-				}
-			}
+		// Both passes run over the pairs of consecutive bids, large rankings are split
+		// in chunks which are accumulated in parallel
+		RankingChunk ranking = new RankingChunk(bidOrder, valueOffsets, accumulatorSize, 0,
+				Math.max(bidCount - 1, 0));
+		double[] accumulators;
+		if (bidCount - 1 <= CHUNK_SIZE) {
+			accumulators = ranking.compute();
+		} else {
+			accumulators = ForkJoinPool.commonPool().invoke(ranking);
 		}
 
+		double[] weights = new double[issueCount]; // Get current weights of the Issues
+		System.arraycopy(accumulators, 0, weights, 0, issueCount);
 		weights = normalisation(weights); // Normalize the weights
 
 		// Estimate the estimation value for each possible Value of an Issue
 
-		List<HashMap<Value, Double>> valueWeights = new ArrayList<HashMap<Value, Double>>();
+		double[][] valueWeights = new double[issueCount][];
 
-		for (int j = 0; j < domain.getIssues().size(); j++) {
-			valueWeights.add(new HashMap<Value, Double>());
+		for (int j = 0; j < issueCount; j++) {
+			valueWeights[j] = new double[codec.getValueCount(j)];
+			System.arraycopy(accumulators, valueOffsets[j], valueWeights[j], 0, valueWeights[j].length);
 		}
 
-		for (int i = 0; i < bidOrder.size() - 1; i++) {
-			for (int j = 0; j < domain.getIssues().size(); j++) {
-				Value val = bidOrder.get(i).getValue(j + 1);
-				if (valueWeights.get(j).containsKey(val)) {
-					double a = valueWeights.get(j).get(val) + (((double) i) + 1) / bidOrder.size();
-					valueWeights.get(j).put(val, a);
-				} else {
-					valueWeights.get(j).put(val, (((double) i) + 1) / bidOrder.size());
-				}
-			}
-		}
-
-		for (int j = 0; j < domain.getIssues().size(); j++) {
+		for (int j = 0; j < issueCount; j++) {
 			double weightSum = 0;
-			for (Value val : valueWeights.get(j).keySet()) {
-				weightSum += valueWeights.get(j).get(val);
+			for (int v = 0; v < valueWeights[j].length; v++) {
+				weightSum += valueWeights[j][v];
 			}
-			for (Value val : valueWeights.get(j).keySet()) {
-				double weight = valueWeights.get(j).get(val) / weightSum;
-				factory.setUtility(domain.getIssues().get(j), (ValueDiscrete) val, weight);
+			// Values that do not occur in the ranking are normalized to weight 0, and are
+			// skipped when UtilityTables builds the utility space
+			for (int v = 0; v < valueWeights[j].length; v++) {
+				valueWeights[j][v] = valueWeights[j][v] / weightSum;
 			}
 		}
 
-		factory.getUtilitySpace().setWeights(domain.getIssues(), weights);
+		return new UtilityTables(weights, valueWeights);
+	}
+
+	/**
+	 * Accumulates the issue and value weights of the bid pairs (i, i + 1) of a
+	 * range of the ranking. For every pair the weight of the issues on which both
+	 * bids agree is incremented, and the weight of the values of bid i. Ranges
+	 * larger than the chunk size are split in two halves that are accumulated in
+	 * parallel, the halves are always added in the same order so the result does
+	 * not depend on the scheduling.
+	 */
+	private class RankingChunk extends RecursiveTask<double[]> {
+		private static final long serialVersionUID = 1L;
+
+		private List<Bid> bidOrder;
+		private int[] valueOffsets;
+		private int accumulatorSize;
+		// First and last (exclusive) pair of the chunk
+		private int from;
+		private int to;
+
+		RankingChunk(List<Bid> bidOrder, int[] valueOffsets, int accumulatorSize, int from, int to) {
+			this.bidOrder = bidOrder;
+			this.valueOffsets = valueOffsets;
+			this.accumulatorSize = accumulatorSize;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected double[] compute() {
+			if (to - from > CHUNK_SIZE) {
+				int middle = (from + to) >>> 1;
+				RankingChunk left = new RankingChunk(bidOrder, valueOffsets, accumulatorSize, from, middle);
+				RankingChunk right = new RankingChunk(bidOrder, valueOffsets, accumulatorSize, middle, to);
+				left.fork();
+				double[] accumulators = right.compute();
+				double[] leftAccumulators = left.join();
+				for (int k = 0; k < accumulatorSize; k++) {
+					accumulators[k] += leftAccumulators[k];
+				}
+				return accumulators;
+			}
 
-		return factory.getUtilitySpace();
+			double[] accumulators = new double[accumulatorSize];
+			if (from >= to) {
+				return accumulators;
+			}
+			int issueCount = valueOffsets.length;
+			int bidCount = bidOrder.size();
+			// Value indices of bid i and bid i + 1
+			int[] current = codec.toIndices(bidOrder.get(from), new int[issueCount]);
+			int[] next = new int[issueCount];
+			for (int i = from; i < to; i++) {
+				codec.toIndices(bidOrder.get(i + 1), next);
+				double rankWeight = (((double) i) + 1) / bidCount; // Add weight based on rank
+				for (int j = 0; j < issueCount; j++) {
+					if (current[j] == next[j]) {
+						accumulators[j] += rankWeight;
+					}
+					accumulators[valueOffsets[j] + current[j]] += rankWeight;
+				}
+				int[] swap = current;
+				current = next;
+				next = swap;
+			}
+			return accumulators;
+		}
 	}
 
 	/*
@@ -1,7 +1,16 @@
 package ai2018.group15;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
 
+import genius.core.AgentID;
+import genius.core.Bid;
+import genius.core.actions.Action;
+import genius.core.actions.Offer;
 import genius.core.boaframework.BoaParty;
 import genius.core.boaframework.NegotiationSession;
 import genius.core.boaframework.SessionData;
@@ -10,6 +19,18 @@ import genius.core.persistent.PersistentDataType;
 
 // This class contains all the different strategies of our negotiation party.
 public class Group15 extends BoaParty {
+	// Concession parameter e of the bidding strategy
+	private static final double CONCESSION = 1.0;
+	// Parameters a, b, t and c of the acceptance strategy
+	private static final double ACCEPT_A = 1;
+	private static final double ACCEPT_B = 0;
+	private static final double ACCEPT_T = 0.99;
+	private static final double ACCEPT_C = 0.7;
+
+	// Outcome space shared by the components
+	private SessionSpace sessionSpace;
+	// Trace of the session, null if traces are not recorded
+	private SessionTrace trace;
 
 	public Group15() {
 		super(null, new HashMap<String, Double>(), null, new HashMap<String, Double>(), null,
@@ -27,20 +48,135 @@ public class Group15 extends BoaParty {
 		}
 
 		negotiationSession = new NegotiationSession(sessionData, info.getUtilitySpace(), info.getTimeline(), null,
-				null);
-		opponentModel = new Group15_OM();
-		opponentModel.init(negotiationSession, null);
-		omStrategy = new Group15_OMS();
-		omStrategy.init(negotiationSession, opponentModel, null);
-		offeringStrategy = new Group15_BS();
+				info.getUserModel());
+		// Unless persistent data is disabled, the outcome space is stored for later
+		// sessions on the profile
+		OutcomeIndexStore store = null;
+		if (info.getPersistentData().getPersistentDataType() != PersistentDataType.DISABLED) {
+			store = new OutcomeIndexStore(OutcomeIndexStore.getDefaultDirectory());
+		}
+		Components components = createComponents(negotiationSession, store, info.getRandomSeed());
+		sessionSpace = components.getSessionSpace();
+		opponentModel = components.getOpponentModel();
+		omStrategy = components.getOMStrategy();
+		offeringStrategy = components.getOfferingStrategy();
+		acceptConditions = components.getAcceptanceStrategy();
+
+		File traceDirectory = SessionTrace.getDirectory();
+		if (traceDirectory != null) {
+			try {
+				trace = SessionTrace.create(traceDirectory, info.getRandomSeed(), info.getTimeline(),
+						sessionSpace.getCodec());
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/***
+	 * Creates the components of the agent with the parameters it negotiates with.
+	 * The outcome space is computed once and shared by all components. The agent
+	 * and the benchmark harnesses both create their components here, so the
+	 * harnesses run the same agent.
+	 * 
+	 * @param negotiationSession state of the negotiation, with the user model
+	 *                           under preference uncertainty
+	 * @param store              store of previously computed profiles, or null
+	 * @param seed               seed of the random generators of the components
+	 * @return components of the agent
+	 */
+	public static Components createComponents(NegotiationSession negotiationSession, OutcomeIndexStore store,
+			long seed) {
+		Components components = new Components();
+		components.sessionSpace = new SessionSpace(negotiationSession, LazyOutcomeSpace.DEFAULT_MAX_OUTCOMES, store);
+		// One seeded random generator is split over the components, so a session can
+		// be replayed from its seed
+		SplittableRandom random = new SplittableRandom(seed);
+		components.opponentModel = new Group15_OM(components.sessionSpace);
+		components.opponentModel.init(negotiationSession, null);
+		components.omStrategy = new Group15_OMS(components.sessionSpace, random.split());
+		components.omStrategy.init(negotiationSession, components.opponentModel, null);
+		components.offeringStrategy = new Group15_BS(components.sessionSpace, random.split());
 		HashMap<String, Double> map = new HashMap<String, Double>();
-		map.put("e", 1.0);
+		map.put("e", CONCESSION);
 		try {
-			offeringStrategy.init(negotiationSession, opponentModel, omStrategy, map);
+			components.offeringStrategy.init(negotiationSession, components.opponentModel, components.omStrategy,
+					map);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
-		acceptConditions = new Group15_AS(negotiationSession, offeringStrategy, 1, 0, 0.99, 0.7);
+		components.acceptanceStrategy = new Group15_AS(negotiationSession, components.offeringStrategy,
+				components.sessionSpace, ACCEPT_A, ACCEPT_B, ACCEPT_T, ACCEPT_C);
+		return components;
+	}
+
+	/**
+	 * The components of the agent, which share one session space.
+	 */
+	public static class Components {
+		private SessionSpace sessionSpace;
+		private Group15_OM opponentModel;
+		private Group15_OMS omStrategy;
+		private Group15_BS offeringStrategy;
+		private Group15_AS acceptanceStrategy;
+
+		public SessionSpace getSessionSpace() {
+			return sessionSpace;
+		}
+
+		public Group15_OM getOpponentModel() {
+			return opponentModel;
+		}
+
+		public Group15_OMS getOMStrategy() {
+			return omStrategy;
+		}
+
+		public Group15_BS getOfferingStrategy() {
+			return offeringStrategy;
+		}
+
+		public Group15_AS getAcceptanceStrategy() {
+			return acceptanceStrategy;
+		}
+	}
+
+	@Override
+	public void receiveMessage(AgentID sender, Action action) {
+		// In a multilateral session every opponent is modelled separately, so the
+		// opponent model and the history statistics need to know the sender of the bid
+		if (opponentModel instanceof Group15_OM) {
+			((Group15_OM) opponentModel).setSender(sender);
+		}
+		if (sessionSpace != null) {
+			sessionSpace.getHistory().setSender(sender);
+		}
+		if (trace != null && action instanceof Offer) {
+			trace.recordBid(negotiationSession.getTime(), sender, ((Offer) action).getBid());
+		}
+		super.receiveMessage(sender, action);
+	}
+
+	@Override
+	public Action chooseAction(List<Class<? extends Action>> possibleActions) {
+		double start = negotiationSession.getTime();
+		Action action = super.chooseAction(possibleActions);
+		if (trace != null) {
+			trace.recordTurn(start, negotiationSession.getTime());
+		}
+		return action;
+	}
+
+	@Override
+	public Map<String, String> negotiationEnded(Bid acceptedBid) {
+		if (ComponentMetrics.ENABLED && sessionSpace != null) {
+			System.out.print(sessionSpace.getMetrics().summary());
+		}
+		if (trace != null) {
+			trace.close();
+			trace = null;
+		}
+		return super.negotiationEnded(acceptedBid);
 	}
 
 	@Override
@@ -12,15 +12,18 @@ import genius.core.boaframework.BOAparameter;
 import genius.core.boaframework.NegotiationSession;
 import genius.core.boaframework.OfferingStrategy;
 import genius.core.boaframework.OpponentModel;
-import genius.core.boaframework.SortedOutcomeSpace;
 import genius.core.uncertainty.UserModel;
 
 /**
  * This AS determines whether the agent should accept or reject the latest bid.
- * Before the negotiation has reached a time t, the agent will only accept the
+ * Before the last r rounds of the negotiation, the agent will only accept the
  * opponent's bid if its utility is higher than it would be in their own next
- * bid. After time t, the agent will accept any bid that is higher than some
- * variable c.
+ * bid. In the last r rounds, the agent will accept any bid that is higher than
+ * some variable c, which is discounted towards the deadline, or that is as good
+ * as the q quantile of the recent bids of the opponent, as the opponent is then
+ * unlikely to offer more in the time left. The rounds are measured by the
+ * deadline controller, until a round has been measured the last rounds start at
+ * time t.
  */
 public class Group15_AS extends AcceptanceStrategy {
 
@@ -28,22 +31,44 @@ public class Group15_AS extends AcceptanceStrategy {
 	private double b;
 	private double t;
 	private double c;
+	// Quantile of the recent bids of the opponent which is accepted in the last
+	// rounds
+	private double q = 0.9;
+	// Number of rounds before the deadline at which the last rounds start
+	private double r = 2;
 
 	private UserModel userModel;
 
+	// Outcome space shared with the other components
+	private SessionSpace sessionSpace;
+
+	// Latencies of the component, shared with the other components
+	private ComponentMetrics metrics;
+	// Measures the rounds left in the session, shared with the other components
+	private DeadlineController deadline;
+	// Statistics of the bids of the opponent, shared with the other components
+	private HistoryIndex history;
+
 	// Empty constructor for the BOA framework.
 	public Group15_AS() {
 	}
 
 	public Group15_AS(NegotiationSession negoSession, OfferingStrategy strat, double alpha, double beta, double gamma,
 			double cee) {
+		this(negoSession, strat, null, alpha, beta, gamma, cee);
+	}
+
+	public Group15_AS(NegotiationSession negoSession, OfferingStrategy strat, SessionSpace space, double alpha,
+			double beta, double gamma, double cee) {
 		this.negotiationSession = negoSession;
 		this.offeringStrategy = strat;
+		this.sessionSpace = space;
 
 		this.a = alpha;
 		this.b = beta;
 		this.t = gamma;
 		this.c = cee;
+		initShared();
 	}
 
 	@Override
@@ -53,10 +78,11 @@ public class Group15_AS extends AcceptanceStrategy {
 		this.offeringStrategy = strat;
 		userModel = negotiationSession.getUserModel();
 
-		if (userModel != null) {
-			negotiationSession
-					.setOutcomeSpace(new SortedOutcomeSpace(new EstimateUtility(negotiationSession).getUtilitySpace()));
+		// Only compute the outcome space if it is not shared by the agent
+		if (userModel != null && sessionSpace == null) {
+			sessionSpace = new SessionSpace(negotiationSession);
 		}
+		initShared();
 
 		if (parameters.get("a") != null || parameters.get("b") != null || parameters.get("g") != null) {
 			a = parameters.get("a");
@@ -70,39 +96,78 @@ public class Group15_AS extends AcceptanceStrategy {
 			t = 0.99;
 			c = 0.7;
 		}
+		if (parameters.get("q") != null) {
+			q = parameters.get("q");
+		}
+		if (parameters.get("r") != null) {
+			r = parameters.get("r");
+		}
+	}
+
+	/***
+	 * Takes the state shared with the other components from the session space,
+	 * or creates it if there is none. Called by both the constructor and init, as
+	 * the agent does not call init on the component.
+	 */
+	private void initShared() {
+		metrics = sessionSpace != null ? sessionSpace.getMetrics() : new ComponentMetrics();
+		// Without a shared controller no rounds are measured, and the fixed cut-over
+		// time is used
+		deadline = sessionSpace != null ? sessionSpace.getDeadline() : new DeadlineController(negotiationSession);
+		history = sessionSpace != null ? sessionSpace.getHistory() : new HistoryIndex(negotiationSession);
 	}
 
 	@Override
 	public String printParameters() {
-		String str = "[a: " + a + " b: " + b + " t: " + t + " c: " + c + " ]";
+		String str = "[a: " + a + " b: " + b + " t: " + t + " c: " + c + " q: " + q + " r: " + r + " ]";
 		return str;
 	}
 
+	@Override
+	public Actions determineAcceptability() {
+		long start = ComponentMetrics.start();
+		Actions action = decideAcceptability();
+		deadline.endTurn();
+		metrics.record(ComponentMetrics.DETERMINE_ACCEPTABILITY, start);
+		return action;
+	}
+
 	/**
 	 * Determines whether the last bid should be accepted or rejected based on the
 	 * AS.
 	 * 
 	 * @return an action object specifying Accept or Reject.
 	 */
-	@Override
-	public Actions determineAcceptability() {
+	private Actions decideAcceptability() {
 		double nextMyBidUtil = offeringStrategy.getNextBid().getMyUndiscountedUtil();
-		double lastOpponentBidUtil = negotiationSession.getOpponentBidHistory().getLastBidDetails()
-				.getMyUndiscountedUtil();
+		double lastOpponentBidUtil = history.getLastUtility();
+
+		boolean lastRounds = deadline.isWithinRounds(r, t);
 
 		if (a * lastOpponentBidUtil + b >= nextMyBidUtil) {
 			return Actions.Accept;
-		} else if (negotiationSession.getTime() > t && lastOpponentBidUtil >= c - getCDiscount()) {
+		} else if (lastRounds && lastOpponentBidUtil >= c - getCDiscount()) {
 			return Actions.Accept;
-		} else if (negotiationSession.getTime() > 0.99) {
+		} else if (lastRounds && history.getRecentCount() == HistoryIndex.WINDOW_SIZE
+				&& lastOpponentBidUtil >= history.getQuantile(q)) {
+			// One of the best recent bids of the opponent, only once the quantiles are
+			// taken over a full window
+			return Actions.Accept;
+		} else if (deadline.isWithinRounds(1)) { // no time for another offer
 			return Actions.Accept;
 		}
 
 		return Actions.Reject;
 	}
 
+	/***
+	 * Discount of c, which grows from 0 at the start of the last rounds to c at
+	 * the deadline
+	 *
+	 * @return discount of c
+	 */
 	public double getCDiscount() {
-		return (c * pow(((negotiationSession.getTime() - t) / (1 - t)), 2d));
+		return (c * pow(deadline.getProgress(r, t), 2d));
 	}
 
 	@Override
@@ -112,9 +177,12 @@ public class Group15_AS extends AcceptanceStrategy {
 				"Accept when the opponent's utility * a + b is greater than the utility of our current bid"));
 		set.add(new BOAparameter("b", 0.0,
 				"Accept when the opponent's utility * a + b is greater than the utility of our current bid"));
-		set.add(new BOAparameter("t", 0.99, "If time greater than t, then accept"));
+		set.add(new BOAparameter("t", 0.99, "Time at which the last rounds start until the length of a round is known"));
+		set.add(new BOAparameter("r", 2.0, "Number of rounds before the deadline at which the last rounds start"));
 		set.add(new BOAparameter("c", 0.7,
-				"If time is greater than t and the opponent's utility is greater than c, accept"));
+				"If in the last rounds and the opponent's utility is greater than c, accept"));
+		set.add(new BOAparameter("q", 0.9,
+				"If in the last rounds and the opponent's utility is at least the q quantile of its recent bids, accept"));
 		return set;
 	}
 
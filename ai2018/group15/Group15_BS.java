@@ -1,12 +1,12 @@
 package ai2018.group15;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.SplittableRandom;
 import java.util.Set;
 
-import genius.core.BidHistory;
 import genius.core.bidding.BidDetails;
 import genius.core.boaframework.BOAparameter;
 import genius.core.boaframework.NegotiationSession;
@@ -14,8 +14,6 @@ import genius.core.boaframework.NoModel;
 import genius.core.boaframework.OMStrategy;
 import genius.core.boaframework.OfferingStrategy;
 import genius.core.boaframework.OpponentModel;
-import genius.core.boaframework.SortedOutcomeSpace;
-import genius.core.misc.Range;
 import genius.core.uncertainty.UserModel;
 
 /**
@@ -44,8 +42,18 @@ public class Group15_BS extends OfferingStrategy {
 	private double Pmin;
 	// Concession factor
 	private double e;
-	// Outcome space
-	private SortedOutcomeSpace outcomespace;
+	// Outcome space shared with the other components
+	private SessionSpace sessionSpace;
+	// Index for utility range queries on the outcome space
+	private OutcomeIndex outcomeIndex;
+	// Window of bids around the target utility
+	private BidWindow targetWindow;
+	// Max bid count generated for the target window when bids are generated
+	private int maxTargetBids = 100;
+	// Max number of outcomes for which the outcome space is enumerated
+	private long maxOutcomes = LazyOutcomeSpace.DEFAULT_MAX_OUTCOMES;
+	// Statistics of the bids of the opponent, shared with the other components
+	private HistoryIndex history;
 	// Best Opponent's bid
 	private BidDetails bestOpponentBid;
 
@@ -71,13 +79,6 @@ public class Group15_BS extends OfferingStrategy {
 	// Opponent last concession amount
 	private double opponentLastConcessionAmount = 0;
 
-	/**
-	 * Before last opponent bid util to compare with last opponent bid util to see
-	 * if opponent conceded or not
-	 */
-	private double beforeLastOpponentBidUtil;
-	// Most recent bid from opponent
-	private double lastOpponentBidUtil;
 	/**
 	 * Minimum difference in opponent bid util before it is considered a concession
 	 * or increase
@@ -87,7 +88,7 @@ public class Group15_BS extends OfferingStrategy {
 	// Minimum lower bound of sliding window
 	private double minimumLowerBound = 0.80;
 
-	private Random rng;
+	private SplittableRandom rng;
 
 	// Size (in utility) of window to take target utility bids from
 	private double windowSize = 0.05;
@@ -101,6 +102,25 @@ public class Group15_BS extends OfferingStrategy {
 	 */
 	private double timeScalar = 1.0;
 
+	// Latencies of the component, shared with the other components
+	private ComponentMetrics metrics;
+	// Measures the rounds left in the session, shared with the other components
+	private DeadlineController deadline;
+	// Number of rounds before the deadline at which the endgame starts
+	private double endgameRounds = 2;
+	// Whether to offer a random bid on the Pareto frontier within the window
+	// instead of a random one of the best bids for the opponent in the window
+	private boolean useFrontier = false;
+
+	// Empty constructor for the BOA framework.
+	public Group15_BS() {
+	}
+
+	public Group15_BS(SessionSpace space, SplittableRandom random) {
+		this.sessionSpace = space;
+		this.rng = random;
+	}
+
 	/**
 	 * Method which initializes the agent by setting all parameters. The parameter
 	 * "e" is the only parameter which is required.
@@ -123,23 +143,38 @@ public class Group15_BS extends OfferingStrategy {
 			this.negotiationSession = negoSession;
 			this.userModel = negotiationSession.getUserModel();
 
-			if (userModel != null) {
-				outcomespace = new SortedOutcomeSpace(new EstimateUtility(negotiationSession).getUtilitySpace());
-				negotiationSession.setOutcomeSpace(outcomespace);
-			} else {
-				outcomespace = new SortedOutcomeSpace(negotiationSession.getUtilitySpace());
-				negotiationSession.setOutcomeSpace(outcomespace);
+			if (parameters.get("o") != null) {
+				maxOutcomes = Math.round(parameters.get("o"));
 			}
 
-			bs = new BidSelector(outcomespace, maxWindowSize, maxBids, maxConcessionAmount, maxIncreaseAmount);
-
+			// Only compute the outcome space if it is not shared by the agent
+			if (sessionSpace == null) {
+				sessionSpace = new SessionSpace(negotiationSession, maxOutcomes);
+			}
+			outcomeIndex = sessionSpace.getOutcomeIndex();
+			metrics = sessionSpace.getMetrics();
+			deadline = sessionSpace.getDeadline();
+			history = sessionSpace.getHistory();
 			bestOpponentBid = null;
-			beforeLastOpponentBidUtil = -1;
+			targetWindow = new BidWindow(maxTargetBids);
 
-			rng = new Random();
+			if (rng == null) {
+				rng = new SplittableRandom();
+			}
+
+			bs = new BidSelector(outcomeIndex, maxWindowSize, maxBids, maxConcessionAmount, maxIncreaseAmount,
+					rng.split());
 
 			this.e = parameters.get("e");
 
+			if (parameters.get("r") != null) {
+				endgameRounds = parameters.get("r");
+			}
+
+			if (parameters.get("f") != null) {
+				useFrontier = parameters.get("f") != 0;
+			}
+
 			if (parameters.get("k") != null)
 				this.k = parameters.get("k");
 			else
@@ -148,13 +183,12 @@ public class Group15_BS extends OfferingStrategy {
 			if (parameters.get("min") != null)
 				this.Pmin = parameters.get("min");
 			else
-				this.Pmin = negoSession.getMinBidinDomain().getMyUndiscountedUtil();
+				this.Pmin = outcomeIndex.getMinUtility();
 
 			if (parameters.get("max") != null) {
 				Pmax = parameters.get("max");
 			} else {
-				BidDetails maxBid = negoSession.getMaxBidinDomain();
-				Pmax = maxBid.getMyUndiscountedUtil();
+				Pmax = outcomeIndex.getMaxUtility();
 			}
 
 			this.opponentModel = model;
@@ -167,7 +201,20 @@ public class Group15_BS extends OfferingStrategy {
 
 	@Override
 	public BidDetails determineOpeningBid() {
-		return bs.getFirstBid();
+		deadline.beginTurn();
+		BidDetails bid = bs.getFirstBid();
+		deadline.endTurn();
+		return bid;
+	}
+
+	@Override
+	public BidDetails determineNextBid() {
+		long start = ComponentMetrics.start();
+		deadline.beginTurn();
+		BidDetails bid = selectNextBid();
+		deadline.endTurn();
+		metrics.recordRound(start);
+		return bid;
 	}
 
 	/**
@@ -176,14 +223,10 @@ public class Group15_BS extends OfferingStrategy {
 	 * specified, then the agent return a bid according to the opponent model
 	 * strategy.
 	 */
-	@Override
-	public BidDetails determineNextBid() {
-		double time = negotiationSession.getTime();
-
-		if (time > 0.99) { // near time limit -> conceding strategy
+	private BidDetails selectNextBid() {
+		if (deadline.isWithinRounds(endgameRounds)) { // near time limit -> conceding strategy
 			if (bestOpponentBid == null) {
-				BidHistory opponentBids = negotiationSession.getOpponentBidHistory();
-				bestOpponentBid = opponentBids.getBestBidDetails();
+				bestOpponentBid = history.getBestBid();
 			}
 
 			nextBid = bestOpponentBid;
@@ -207,7 +250,7 @@ public class Group15_BS extends OfferingStrategy {
 			} else {
 				// Determine if opponent made a concession and if the concession has been
 				// handled by our agent yet
-				if (((Group15_OM) opponentModel).opponentConceeded()
+				if (opponentModel instanceof Group15_OM && ((Group15_OM) opponentModel).opponentConceeded()
 						&& !((Group15_OM) opponentModel).getConcessionHandled()) {
 					// Update target utility
 					if (utilityGoal > Pmin) {
@@ -218,12 +261,27 @@ public class Group15_BS extends OfferingStrategy {
 						((Group15_OM) opponentModel).setConcessionHandled();
 					}
 				}
-				Range targetRange = new Range(utilityGoal - windowSize / 2, utilityGoal + windowSize / 2);
-				// Get set of similarly preferred bids
-				List<BidDetails> preferredBids = outcomespace.getBidsinRange(targetRange);
-
-				// Get a good bid for the opponent from our set of preferred bids
-				nextBid = omStrategy.getBid(preferredBids);
+				double lower = utilityGoal - windowSize / 2;
+				double upper = utilityGoal + windowSize / 2;
+				nextBid = null;
+				if (useFrontier && omStrategy instanceof Group15_OMS) {
+					// Look up a Pareto optimal bid of the outcome space within the window, for the
+					// current opponent model
+					nextBid = ((Group15_OMS) omStrategy).getFrontierBid(lower, upper);
+				}
+				if (nextBid == null) {
+					// Get set of similarly preferred bids
+					outcomeIndex.query(lower, upper, targetWindow);
+
+					if (targetWindow.isEmpty()) {
+						// No bid within the window in a sparse part of the outcome space, repeat our
+						// last bid until the target utility reaches the next bid
+						nextBid = negotiationSession.getOwnBidHistory().getLastBidDetails();
+					} else {
+						// Get a good bid for the opponent from our set of preferred bids
+						nextBid = getOpponentBid(targetWindow);
+					}
+				}
 			}
 		}
 
@@ -231,22 +289,32 @@ public class Group15_BS extends OfferingStrategy {
 	}
 
 	/***
-	 * This function returns the difference between the last two bids of the
-	 * opponent
+	 * Lets the opponent model strategy choose a bid of the window. Our strategy
+	 * scores the window directly, other strategies choose from a list of its bids.
 	 * 
-	 * @return Difference in util between opponent's last two bids
+	 * @param window bids around the target utility
+	 * @return bid to be offered to opponent
 	 */
-	private double opponentBidDifference() {
-		if (negotiationSession.getOpponentBidHistory().getHistory().isEmpty())
-			return 0;
-		lastOpponentBidUtil = negotiationSession.getOpponentBidHistory().getLastBidDetails().getMyUndiscountedUtil();
-		if (beforeLastOpponentBidUtil == -1) {
-			beforeLastOpponentBidUtil = lastOpponentBidUtil;
-			return 0;
+	private BidDetails getOpponentBid(BidWindow window) {
+		if (omStrategy instanceof Group15_OMS) {
+			return ((Group15_OMS) omStrategy).getBid(window);
+		}
+		List<BidDetails> bids = new ArrayList<BidDetails>(window.size());
+		for (int i = 0; i < window.size(); i++) {
+			bids.add(window.getBidDetails(i));
 		}
-		double difference = lastOpponentBidUtil - beforeLastOpponentBidUtil;
-		beforeLastOpponentBidUtil = lastOpponentBidUtil;
-		return difference;
+		return omStrategy.getBid(bids);
+	}
+
+	/***
+	 * This function returns the trend of the difference between consecutive bids
+	 * of the opponent, which is steadier than the difference between the last two
+	 * bids
+	 * 
+	 * @return Average difference in util between the opponent's consecutive bids
+	 */
+	private double opponentBidDifference() {
+		return history.getTrend();
 	}
 
 	/***
@@ -307,8 +375,13 @@ public class Group15_BS extends OfferingStrategy {
 		Set<BOAparameter> set = new HashSet<BOAparameter>();
 		set.add(new BOAparameter("e", 1.0, "Concession rate"));
 		set.add(new BOAparameter("k", 0.0, "Offset"));
+		set.add(new BOAparameter("r", 2.0, "Number of rounds before the deadline at which the endgame starts"));
+		set.add(new BOAparameter("f", 0.0,
+				"Offer a random Pareto optimal bid within the window (1) instead of a random one of the best bids for the opponent (0), needs Group15_OMS"));
 		set.add(new BOAparameter("min", 0.0, "Minimum utility"));
 		set.add(new BOAparameter("max", 0.99, "Maximum utility"));
+		set.add(new BOAparameter("o", (double) LazyOutcomeSpace.DEFAULT_MAX_OUTCOMES,
+				"Maximum number of outcomes to enumerate, bids of larger domains are generated on demand"));
 
 		return set;
 	}
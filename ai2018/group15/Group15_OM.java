@@ -1,26 +1,19 @@
 package ai2018.group15;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import agents.org.apache.commons.math.MathException;
-import agents.org.apache.commons.math.stat.inference.ChiSquareTestImpl;
+import genius.core.AgentID;
 import genius.core.Bid;
-import genius.core.bidding.BidDetails;
 import genius.core.boaframework.BOAparameter;
 import genius.core.boaframework.NegotiationSession;
 import genius.core.boaframework.OpponentModel;
 import genius.core.issue.IssueDiscrete;
-import genius.core.issue.Objective;
-import genius.core.issue.Value;
-import genius.core.issue.ValueDiscrete;
 import genius.core.utility.AdditiveUtilitySpace;
-import genius.core.utility.Evaluator;
 import genius.core.utility.EvaluatorDiscrete;
 
 /**
@@ -28,6 +21,13 @@ import genius.core.utility.EvaluatorDiscrete;
  * Model. Adapted the hard headed frequency model using the paper [1] to compare
  * sets of bids instead of on a pair basis.
  * 
+ * Every opponent is modelled separately, opponents are identified by the sender
+ * of their bids. Bids of which the sender is not known, as in a bilateral
+ * session, are added to a default opponent. The opponents can be updated
+ * concurrently, updates of the same opponent are serialized by a lock that is
+ * shared by a stripe of opponents. A bid is evaluated against all opponents in
+ * one pass, its evaluation is the lowest utility of any opponent.
+ * 
  * 1. Rincon, J. A., Julian, V., Carrascosa, C., Costa, A., & Novais, P. (2018).
  * Detecting emotions through non-invasive wearables. Logic Journal of the IGPL.
  */
@@ -52,17 +52,51 @@ public class Group15_OM extends OpponentModel {
 	private int minBidSetSize = 4;// specific to party domain
 	private int maxBidSetSize = 8;
 
-	private ArrayList<BidDetails> oppBidSet;
-	private ArrayList<BidDetails> prevOppBidSet;
-
-	private boolean Conceeded = false;
-
-	private boolean ConcessionHandled = false;
+	// Encodes bids as value indices, the frequency counts use the same indices
+	private BidCodec codec;
+	// Value indices of the most recently evaluated bid
+	private int[] evaluationIndices;
+
+	// Model of every opponent, by the sender of its bids
+	private ConcurrentHashMap<AgentID, OpponentState> opponents = new ConcurrentHashMap<AgentID, OpponentState>();
+	// Model of the bids of which the sender is not known
+	private OpponentState defaultOpponent;
+	// The opponents that made a bid, or only the default opponent if there are none
+	private volatile OpponentState[] activeOpponents;
+	// Opponent that made the most recent bid
+	private volatile OpponentState lastOpponent;
+	// Sender of the bid that is passed to updateModel next
+	private volatile AgentID sender;
+	// Locks of the opponents, an opponent uses the lock of the hash of its sender
+	private Object[] locks = new Object[16];
+
+	// Outcome space shared with the other components
+	private SessionSpace sessionSpace;
 
 	// Amount by which to scale time dependent variables
 	private double timeScalar = 1.0;
 
-	ChiSquareTestImpl test;
+	/*
+	 * Generation of the model, advances every time the weights or evaluations of an
+	 * opponent change. Cached evaluations of an older generation are invalid.
+	 */
+	private AtomicInteger generation = new AtomicInteger(1);
+	// Direct mapped cache of bid evaluations, indexed by a hash of the bid code
+	private int cacheSize = 4096;
+	private long[] cacheCodes = new long[cacheSize];
+	private double[] cacheEvaluations = new double[cacheSize];
+	private int[] cacheGenerations = new int[cacheSize];
+
+	// Latencies of the component, shared with the other components
+	private ComponentMetrics metrics;
+
+	// Empty constructor for the BOA framework.
+	public Group15_OM() {
+	}
+
+	public Group15_OM(SessionSpace space) {
+		this.sessionSpace = space;
+	}
 
 	@Override
 	public void init(NegotiationSession negotiationSession, Map<String, Double> parameters) {
@@ -89,13 +123,22 @@ public class Group15_OM extends OpponentModel {
 			beta = 5;
 		}
 
-		oppBidSet = new ArrayList<BidDetails>(bidSetSize);
-		prevOppBidSet = new ArrayList<BidDetails>(bidSetSize);
-
 		learnValueAddition = 1;
 		opponentUtilitySpace = (AdditiveUtilitySpace) negotiationSession.getUtilitySpace().copy();
 		amountOfIssues = opponentUtilitySpace.getDomain().getIssues().size();
 
+		if (sessionSpace != null) {
+			codec = sessionSpace.getCodec();
+			metrics = sessionSpace.getMetrics();
+		} else {
+			codec = new BidCodec(opponentUtilitySpace.getDomain());
+			metrics = new ComponentMetrics();
+		}
+		evaluationIndices = new int[amountOfIssues];
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new Object();
+		}
+
 		// Scale with time
 		bidSetSize = (int) Math.floor(bidSetSize * Math.sqrt(timeScalar));
 		if (bidSetSize > maxBidSetSize) {
@@ -105,174 +148,476 @@ public class Group15_OM extends OpponentModel {
 			bidSetSize = minBidSetSize;
 		}
 
-		initializeModel();
+		opponents.clear();
+		defaultOpponent = new OpponentState(null, opponentUtilitySpace);
+		activeOpponents = new OpponentState[] { defaultOpponent };
+		lastOpponent = defaultOpponent;
+	}
 
-		test = new ChiSquareTestImpl();
+	/***
+	 * Sets the sender of the bids which are passed to updateModel(Bid, double),
+	 * until another sender is set
+	 *
+	 * @param sender sender of the next bids, or null if it is not known
+	 */
+	public void setSender(AgentID sender) {
+		this.sender = sender;
 	}
 
 	@Override
 	public void updateModel(Bid opponentBid, double time) {
-		if (negotiationSession.getOpponentBidHistory().size() < 2) {
-			return;
+		updateModel(sender, opponentBid, time);
+	}
+
+	/***
+	 * Updates the model of an opponent with a bid of the opponent. Models of
+	 * different opponents can be updated concurrently.
+	 *
+	 * @param opponent    sender of the bid, or null if it is not known
+	 * @param opponentBid bid of the opponent
+	 * @param time        time of the bid
+	 */
+	public void updateModel(AgentID opponent, Bid opponentBid, double time) {
+		long start = ComponentMetrics.start();
+		OpponentState state = getOpponent(opponent);
+		synchronized (state.lock) {
+			state.learnFromBid(opponentBid, time);
 		}
+		lastOpponent = state;
+		metrics.record(ComponentMetrics.UPDATE_MODEL, start);
+	}
 
-		// Add the most recent opponent bid
-		BidDetails oppBid = negotiationSession.getOpponentBidHistory().getHistory()
-				.get(negotiationSession.getOpponentBidHistory().size() - 1);
-		oppBidSet.add(oppBid);
-
-		// If the set is full perform comparison
-		if (oppBidSet.size() == bidSetSize) {
-			Set<Integer> issueSet = oppBid.getBid().getValues().keySet();
-			Set<Integer> noConcedeSet = new HashSet<Integer>();
-			// Per issue, perform pval test and compare new set's estimated utility with
-			// previous set's new estimated utility
-			boolean concession = false;
-			if (!prevOppBidSet.isEmpty()) {// if only one set has been filled no comparison can be made
-				// Compare the sets; hashmap format is HashMap<IssueNumber, HashMap<Value, frequency>>
-				HashMap<Integer, HashMap<Value, Integer>> fc = frequencyCount(oppBidSet);
-				HashMap<Integer, HashMap<Value, Integer>> prevFc = frequencyCount(prevOppBidSet);
-
-				// Loop over all issues
-				for (Integer i : oppBid.getBid().getValues().keySet()) {
-					HashMap<Value, Integer> frequencyCount = fc.get(i);
-					HashMap<Value, Integer> prevFrequencyCount = prevFc.get(i);
-
-					// Prepare test
-					double[] expected = new double[frequencyCount.keySet().size()];
-					long[] observed = new long[frequencyCount.keySet().size()];
-					Arrays.fill(expected, 0);
-					Arrays.fill(observed, 0);
-					int iteration = 0;
-					for (Value v : frequencyCount.keySet()) {
-						expected[iteration] = frequencyCount.get(v);
-						// frequencyCount can contain new values not present in prevFrequencyCount
-						if (prevFrequencyCount.containsKey(v)) {
-							observed[iteration] = prevFrequencyCount.get(v);
-						} else {
-							observed[iteration] = 0;
+	/**
+	 * Frequency model of one opponent. The model is learned in primitive tables
+	 * instead of in an opponent utility space, which is only updated when it is
+	 * requested.
+	 */
+	private class OpponentState {
+		// Lock of the stripe of the opponent
+		private final Object lock;
+		// Value indices of the most recently counted bid
+		private int[] bidIndices = new int[amountOfIssues];
+		// Value frequency counts of the current and previous set, indexed by issue and
+		// value
+		private int[][] setCount = new int[amountOfIssues][];
+		private int[][] prevSetCount = new int[amountOfIssues][];
+		// Amount of bids in the current set
+		private int setFill = 0;
+		// Value frequency counts of all bids of the opponent, indexed by issue and value
+		private int[][] historyCount = new int[amountOfIssues][];
+		// Amount of bids of the opponent
+		private int bidCount = 0;
+		// Whether a previous set has been filled
+		private boolean hasPrevSet = false;
+
+		// Weight of every issue, normalized as in the opponent utility space
+		private double[] issueWeights = new double[amountOfIssues];
+		// Evaluation (not normalized) of every value, indexed by issue and value
+		private int[][] evaluations = new int[amountOfIssues][];
+		// Highest evaluation of every issue
+		private int[] maxEvaluations = new int[amountOfIssues];
+		// Utility of every value (weight times normalized evaluation), replaced by a
+		// new table whenever the model changes so it can be read without a lock
+		private volatile double[][] scores;
+
+		private volatile boolean Conceeded = false;
+
+		private volatile boolean ConcessionHandled = false;
+
+		// Opponent utility space, created when it is requested
+		private AdditiveUtilitySpace utilitySpace;
+		// Changes of the model and of the opponent utility space
+		private int changes = 0;
+		private int writtenChanges = -1;
+
+		/***
+		 * Initialize to flat weight and flat evaluation distribution
+		 *
+		 * @param opponent     sender of the bids, or null for the default opponent
+		 * @param utilitySpace opponent utility space, or null to create it when it is
+		 *                     requested
+		 */
+		OpponentState(AgentID opponent, AdditiveUtilitySpace utilitySpace) {
+			this.lock = locks[opponent == null ? 0 : (opponent.hashCode() & 0x7fffffff) % locks.length];
+			this.utilitySpace = utilitySpace;
+			double commonWeight = 1D / amountOfIssues;
+			for (int i = 0; i < amountOfIssues; i++) {
+				int valueCount = codec.getValueCount(i);
+				setCount[i] = new int[valueCount];
+				prevSetCount[i] = new int[valueCount];
+				historyCount[i] = new int[valueCount];
+				issueWeights[i] = commonWeight;
+				evaluations[i] = new int[valueCount];
+				Arrays.fill(evaluations[i], 1);
+				maxEvaluations[i] = 1;
+			}
+			compileScores();
+		}
+
+		private void learnFromBid(Bid opponentBid, double time) {
+			// Add the bid to the history counts of the opponent
+			countBid(opponentBid, historyCount);
+			bidCount++;
+
+			if (bidCount < 2) {
+				return;
+			}
+
+			// Add the most recent opponent bid to the frequency counts of the current set
+			countBid(opponentBid, setCount);
+			setFill++;
+
+			// If the set is full perform comparison
+			if (setFill == bidSetSize) {
+				boolean[] noConcede = new boolean[amountOfIssues];
+				int noConcedeCount = 0;
+				// Per issue, perform pval test and compare new set's estimated utility with
+				// previous set's new estimated utility
+				boolean concession = false;
+				if (hasPrevSet) {// if only one set has been filled no comparison can be made
+					// Loop over all issues
+					for (int i = 0; i < amountOfIssues; i++) {
+						int[] frequencyCount = setCount[i];
+						int[] prevFrequencyCount = prevSetCount[i];
+
+						// Test at 0.05, only values present in the new set are compared
+						if (!ChiSquare.isSignificant(frequencyCount, prevFrequencyCount)) {// null hypothesis
+							noConcede[i] = true;
+							noConcedeCount++;
+						} else { // Null hypothesis rejected, check for concession
+							int EU = estimateSetUtility(frequencyCount, i);
+							int prevEU = estimateSetUtility(prevFrequencyCount, i);
+							concession = (EU < prevEU) ? true : concession; // if new estimated utility is lower then a
+																			// concession has been made
 						}
-						iteration++;
 					}
+				}
 
-					double testResult = 1;
-					if (expected.length >= 2 && expected.length == observed.length) {
-						try {
-							testResult = test.chiSquareTest(expected, observed);
-						} catch (IllegalArgumentException e) {
-							e.printStackTrace();
-						} catch (MathException e) {
-							e.printStackTrace();
+				if (concession && noConcedeCount != amountOfIssues) {
+					double weightIncrease = alpha * Math.pow(time, beta);
+					for (int i = 0; i < amountOfIssues; i++) {
+						if (noConcede[i]) {
+							// The weights are normalized after every increase, as setWeight of the
+							// utility space does
+							issueWeights[i] += weightIncrease;
+							normalizeWeights();
 						}
 					}
+				}
 
-					if (testResult > 0.05) {// null hypothesis
-						noConcedeSet.add(i);
-					} else { // Null hypothesis rejected, check for concession
-						int EU = estimateSetUtility(frequencyCount, i);
-						int prevEU = estimateSetUtility(prevFrequencyCount, i);
-						concession = (EU < prevEU) ? true : concession; // if new estimated utility is lower then a
-																		// concession has been made
+				/***
+				 * Then for each issue value that has been offered last time, a constant value
+				 * is added to its corresponding ValueDiscrete for every time it was offered.
+				 * Loop over all issues.
+				 */
+				for (int i = 0; i < amountOfIssues; i++) {
+					int[] evaluation = evaluations[i];
+					int[] frequencyCount = setCount[i];
+					int maxEvaluation = 0;
+					for (int v = 0; v < frequencyCount.length; v++) {
+						/*
+						 * Add constant learnValueAddition to the current preference of the value to
+						 * make it more important, values that were not offered have a count of 0
+						 */
+						evaluation[v] += learnValueAddition * frequencyCount[v];
+						maxEvaluation = Math.max(maxEvaluation, evaluation[v]);
 					}
+					maxEvaluations[i] = maxEvaluation;
 				}
+
+				// Prepare for new set: the counts of the full set become the previous counts
+				// and the old previous counts are cleared to be reused for the new set
+				int[][] oldPrevSetCount = prevSetCount;
+				prevSetCount = setCount;
+				setCount = oldPrevSetCount;
+				for (int[] count : setCount) {
+					Arrays.fill(count, 0);
+				}
+				setFill = 0;
+				hasPrevSet = true;
+				Conceeded = concession;
+				ConcessionHandled = false;
+
+				// The evaluations changed, publish the new scores and invalidate the cached
+				// evaluations
+				compileScores();
+				changes++;
+				metrics.setModelGeneration(generation.incrementAndGet());
 			}
+		}
 
-			if (concession && noConcedeSet.size() != issueSet.size()) {
-				for (Integer issueIndex : noConcedeSet) {
-					Objective issue = opponentUtilitySpace.getDomain().getObjectivesRoot().getObjective(issueIndex);
-					double currentWeight = opponentUtilitySpace.getWeight(issueIndex);
-					double newWeight = currentWeight + (alpha * Math.pow(time, beta));
+		/***
+		 * Estimate the utility of a set of bids. Every bid of the opponent adds the
+		 * frequency of its value in the set to the estimate, so the estimate is
+		 * computed from the value frequency counts of all bids of the opponent.
+		 *
+		 * @param fcount     value frequency count of a set of bids for a specific
+		 *                   issue, indexed by value
+		 * @param issueIndex index of the issue in the domain
+		 * @return the estimated utility (not scaled) depending on fcount
+		 */
+		private int estimateSetUtility(int[] fcount, int issueIndex) {
+			int result = 0;
+			int[] count = historyCount[issueIndex];
+			for (int v = 0; v < fcount.length; v++) {
+				result += fcount[v] * count[v];
+			}
+			return result;
+		}
 
-					opponentUtilitySpace.setWeight(issue, newWeight);
+		/**
+		 * Normalize the issue weights so they sum to 1
+		 */
+		private void normalizeWeights() {
+			double weightSum = 0;
+			for (int i = 0; i < amountOfIssues; i++) {
+				weightSum += issueWeights[i];
+			}
+			for (int i = 0; i < amountOfIssues; i++) {
+				issueWeights[i] /= weightSum;
+			}
+		}
+
+		// Compiles the tables to a new table of scores
+		private void compileScores() {
+			double[][] compiled = new double[amountOfIssues][];
+			for (int i = 0; i < amountOfIssues; i++) {
+				double scale = issueWeights[i] / maxEvaluations[i];
+				compiled[i] = new double[evaluations[i].length];
+				for (int v = 0; v < evaluations[i].length; v++) {
+					compiled[i][v] = scale * evaluations[i][v];
 				}
 			}
+			scores = compiled;
+		}
 
-			/***
-			 * Then for each issue value that has been offered last time, a constant value
-			 * is added to its corresponding ValueDiscrete. Loop over all issues.
-			 */
-			for (BidDetails bid : oppBidSet) {
+		/***
+		 * Add the values of a bid to a frequency count.
+		 *
+		 * @param bid    bid of which the values are counted
+		 * @param fcount value frequency count, indexed by issue and value
+		 */
+		private void countBid(Bid bid, int[][] fcount) {
+			codec.toIndices(bid, bidIndices);
+			for (int i = 0; i < amountOfIssues; i++) {
+				fcount[i][bidIndices[i]]++;
+			}
+		}
 
-				try {
-					for (Entry<Objective, Evaluator> e : opponentUtilitySpace.getEvaluators()) {
-						EvaluatorDiscrete value = (EvaluatorDiscrete) e.getValue();
-						IssueDiscrete issue = ((IssueDiscrete) e.getKey());
-						/*
-						 * Add constant learnValueAddition to the current preference of the value to
-						 * make it more important
-						 */
-						ValueDiscrete issuevalue = (ValueDiscrete) bid.getBid().getValue(issue.getNumber());
-						Integer eval = value.getEvaluationNotNormalized(issuevalue);
-						value.setEvaluation(issuevalue, (learnValueAddition + eval));
+		/***
+		 * Get the opponent utility space, the learned weights and evaluations are
+		 * written to the utility space if it is out of date. Should be called with
+		 * the lock of the opponent.
+		 *
+		 * @return opponent utility space
+		 */
+		private AdditiveUtilitySpace getUtilitySpace() {
+			if (utilitySpace == null) {
+				utilitySpace = (AdditiveUtilitySpace) negotiationSession.getUtilitySpace().copy();
+			}
+			if (writtenChanges != changes) {
+				for (int i = 0; i < amountOfIssues; i++) {
+					IssueDiscrete issue = codec.getIssue(i);
+					utilitySpace.unlock(issue);
+					EvaluatorDiscrete evaluator = (EvaluatorDiscrete) utilitySpace.getEvaluator(issue);
+					evaluator.setWeight(issueWeights[i]);
+					try {
+						for (int v = 0; v < evaluations[i].length; v++) {
+							evaluator.setEvaluation(codec.getValue(i, v), evaluations[i][v]);
+						}
+					} catch (Exception ex) {
+						ex.printStackTrace();
 					}
-				} catch (Exception ex) {
-					ex.printStackTrace();
 				}
+				writtenChanges = changes;
 			}
-
-			// Prepare for new set: prevBidSet contains no or an old bid set, copy bidSet to
-			// prevBidSet and empty bidSet
-			prevOppBidSet = (ArrayList<BidDetails>) oppBidSet.clone();
-			oppBidSet.clear();
-			updateConceeded(concession);
-			ConcessionHandled = false;
+			return utilitySpace;
 		}
+	}
 
+	/***
+	 * Returns the model of an opponent, a new opponent starts with a flat model
+	 *
+	 * @param opponent sender of the bids, or null for the default opponent
+	 * @return model of the opponent
+	 */
+	private OpponentState getOpponent(AgentID opponent) {
+		if (opponent == null) {
+			activate(defaultOpponent);
+			return defaultOpponent;
+		}
+		OpponentState state = opponents.get(opponent);
+		if (state == null) {
+			OpponentState newState = new OpponentState(opponent, null);
+			state = opponents.putIfAbsent(opponent, newState);
+			if (state == null) {
+				state = newState;
+			}
+		}
+		activate(state);
+		return state;
 	}
 
-	public void setConcessionHandled() {
-		ConcessionHandled = true;
+	// Adds an opponent to the opponents that are evaluated once it makes a bid
+	private void activate(OpponentState state) {
+		OpponentState[] active = activeOpponents;
+		for (OpponentState activeState : active) {
+			if (activeState == state) {
+				return;
+			}
+		}
+		synchronized (opponents) {
+			active = activeOpponents;
+			if (active.length == 1 && active[0] == defaultOpponent && defaultOpponent.bidCount == 0) {
+				activeOpponents = new OpponentState[] { state };
+				return;
+			}
+			for (OpponentState activeState : active) {
+				if (activeState == state) {
+					return;
+				}
+			}
+			OpponentState[] extended = Arrays.copyOf(active, active.length + 1);
+			extended[active.length] = state;
+			activeOpponents = extended;
+		}
 	}
 
-	public boolean getConcessionHandled() {
-		return ConcessionHandled;
+	/***
+	 * Evaluate a bid against all opponents in one pass
+	 *
+	 * @param indices value index of every issue of the bid
+	 * @return lowest utility of the bid for any opponent
+	 */
+	private double evaluate(int[] indices) {
+		OpponentState[] active = activeOpponents;
+		double lowest = Double.POSITIVE_INFINITY;
+		for (OpponentState state : active) {
+			double[][] scores = state.scores;
+			double result = 0;
+			for (int i = 0; i < amountOfIssues; i++) {
+				result += scores[i][indices[i]];
+			}
+			lowest = Math.min(lowest, result);
+		}
+		return lowest;
 	}
 
-	private void updateConceeded(boolean didConcede) {
-		Conceeded = didConcede;
+	public void setConcessionHandled() {
+		for (OpponentState state : activeOpponents) {
+			state.ConcessionHandled = true;
+		}
 	}
 
-	public boolean opponentConceeded() {
-		return Conceeded;
+	/***
+	 * Checks whether the concessions of all opponents have been handled
+	 *
+	 * @return false if an opponent conceded and the concession was not handled
+	 */
+	public boolean getConcessionHandled() {
+		for (OpponentState state : activeOpponents) {
+			if (state.Conceeded && !state.ConcessionHandled) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/***
-	 * Estimate the utility of a set of bids.
-	 * 
-	 * @param fcount value frequency count of a set of bids for a specific issue
-	 * @return the estimated utility (not scaled) depending on fcount
+	 * Checks whether an opponent conceded in its last set of bids
+	 *
+	 * @return whether any opponent conceded
 	 */
-	public int estimateSetUtility(HashMap<Value, Integer> fcount, int issueNumber) {
-		int result = 0;
-		ArrayList<BidDetails> allOppBids = (ArrayList<BidDetails>) negotiationSession.getOpponentBidHistory()
-				.getHistory();
-		for (BidDetails bidDetails : allOppBids) { // loop over all bids
-			Bid bid = bidDetails.getBid();
-			Value bidIssueValue = bid.getValue(issueNumber);
-			if (fcount.containsKey(bidIssueValue)) {
-				result += fcount.get(bidIssueValue); // add frequency count to result
+	public boolean opponentConceeded() {
+		for (OpponentState state : activeOpponents) {
+			if (state.Conceeded) {
+				return true;
 			}
 		}
-		return result;
+		return false;
 	}
 
 	/***
-	 * Get the utility of a bid based on the opponent utility space.
-	 * 
+	 * Get the utility of a bid based on the models of the opponents.
+	 *
 	 * @param bid bid of which the utility value is requested
-	 * @return utility of bid
+	 * @return lowest utility of the bid for any opponent
 	 */
 	@Override
 	public double getBidEvaluation(Bid bid) {
-		double result = 0;
-		try {
-			result = opponentUtilitySpace.getUtility(bid);
-		} catch (Exception e) {
-			e.printStackTrace();
+		return evaluate(codec.toIndices(bid, evaluationIndices));
+	}
+
+	/***
+	 * Get the utility of a bid based on the models of the opponents, for bids
+	 * that have no long code.
+	 *
+	 * @param indices value index of every issue of the bid
+	 * @return lowest utility of the bid for any opponent
+	 */
+	public double getBidEvaluation(int[] indices) {
+		return evaluate(indices);
+	}
+
+	/***
+	 * Get the utility of a bid based on the models of the opponents. The
+	 * evaluation is cached until the model changes, the bid is not created.
+	 *
+	 * @param code code of the bid
+	 * @return lowest utility of the bid for any opponent
+	 */
+	public double getBidEvaluation(long code) {
+		long hash = code * 0x9E3779B97F4A7C15L;
+		int slot = (int) (hash >>> 32) & (cacheSize - 1);
+		int currentGeneration = generation.get();
+		if (cacheGenerations[slot] == currentGeneration && cacheCodes[slot] == code) {
+			return cacheEvaluations[slot];
 		}
+		double result = evaluate(codec.toIndices(code, evaluationIndices));
+		cacheCodes[slot] = code;
+		cacheEvaluations[slot] = result;
+		cacheGenerations[slot] = currentGeneration;
 		return result;
 	}
 
+	/***
+	 * Get the opponent utility space of the opponent that made the most recent
+	 * bid.
+	 *
+	 * @return opponent utility space
+	 */
+	@Override
+	public AdditiveUtilitySpace getOpponentUtilitySpace() {
+		OpponentState state = lastOpponent;
+		synchronized (state.lock) {
+			return state.getUtilitySpace();
+		}
+	}
+
+	/***
+	 * Get the opponent utility space of an opponent.
+	 *
+	 * @param opponent sender of the bids of the opponent, or null for the default
+	 *                 opponent
+	 * @return opponent utility space
+	 */
+	public AdditiveUtilitySpace getOpponentUtilitySpace(AgentID opponent) {
+		OpponentState state = getOpponent(opponent);
+		synchronized (state.lock) {
+			return state.getUtilitySpace();
+		}
+	}
+
+	/***
+	 * Get the generation of the model, which advances every time the weights or
+	 * evaluations of an opponent change.
+	 *
+	 * @return generation of the model
+	 */
+	public int getGeneration() {
+		return generation.get();
+	}
+
 	@Override
 	public String getName() {
 		return "Group 15 Window Frequency Model";
@@ -289,55 +634,4 @@ public class Group15_OM extends OpponentModel {
 				"The variable deduction in the weight update, which will determine the decay"));
 		return set;
 	}
-
-	/**
-	 * Initialize to flat weight and flat evaluation distribution
-	 */
-	private void initializeModel() {
-		double commonWeight = 1D / amountOfIssues;
-
-		for (Entry<Objective, Evaluator> e : opponentUtilitySpace.getEvaluators()) {
-
-			opponentUtilitySpace.unlock(e.getKey());
-			e.getValue().setWeight(commonWeight);
-			try {
-				// set all value weights to one (they are normalized when
-				// calculating the utility)
-				for (ValueDiscrete vd : ((IssueDiscrete) e.getKey()).getValues())
-					((EvaluatorDiscrete) e.getValue()).setEvaluation(vd, 1);
-			} catch (Exception ex) {
-				ex.printStackTrace();
-			}
-		}
-	}
-
-	public HashMap<Integer, HashMap<Value, Integer>> frequencyCount(ArrayList<BidDetails> bids) {
-		HashMap<Integer, HashMap<Value, Integer>> fcount = new HashMap<Integer, HashMap<Value, Integer>>();
-		try {
-			for (BidDetails bid : bids) { // Loop over bids
-				HashMap<Integer, Value> bidValues = bid.getBid().getValues();
-				for (Integer i : bidValues.keySet()) { // Loop over issues
-					// Get value of bid for issue
-					Value bidIssueValue = bidValues.get(i);
-
-					HashMap<Value, Integer> valueCount = new HashMap<Value, Integer>();
-					if (fcount.containsKey(i)) { // If already a count for issue
-						valueCount = fcount.get(i);
-						if (valueCount.containsKey(bidIssueValue)) { // if already a count for issue value
-							valueCount.put(bidIssueValue, valueCount.get(bidIssueValue) + 1);
-						} else { // Start count for issue value
-							valueCount.put(bidIssueValue, 1);
-						}
-					} else { // Start count for issue
-						valueCount.put(bidIssueValue, 1);
-					}
-					fcount.put(i, valueCount);
-				}
-			}
-		} catch (Exception ex) {
-			ex.printStackTrace();
-		}
-
-		return fcount;
-	}
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SplittableRandom;
 
 import genius.core.Bid;
 import genius.core.bidding.BidDetails;
@@ -14,7 +15,6 @@ import genius.core.boaframework.BOAparameter;
 import genius.core.boaframework.NegotiationSession;
 import genius.core.boaframework.OMStrategy;
 import genius.core.boaframework.OpponentModel;
-import genius.core.boaframework.SortedOutcomeSpace;
 import genius.core.uncertainty.UserModel;
 import genius.core.utility.AbstractUtilitySpace;
 
@@ -34,6 +34,35 @@ public class Group15_OMS extends OMStrategy {
 	private int nBids = 3;
 	private BidDetailsSorterUtility comparer = new BidDetailsSorterUtility();
 	private AbstractUtilitySpace utilitySpace;
+	// Random generator to select one of the best bids
+	private SplittableRandom rng;
+	// Outcome space shared with the other components
+	private SessionSpace sessionSpace;
+
+	/**
+	 * Min-heap of the best bids for the opponent in a window, the root is the worst
+	 * of the kept bids. The buffers are reused for every window.
+	 */
+	private double[] topScores = new double[0];
+	private int[] topPositions = new int[0];
+	private int topCount;
+	// Value indices of a bid of a window without codes
+	private int[] windowIndices = new int[0];
+
+	// Pareto frontier of the outcome space, created when it is first requested
+	private ParetoFrontier frontier;
+
+	// Latencies of the component, shared with the other components
+	private ComponentMetrics metrics;
+
+	// Empty constructor for the BOA framework.
+	public Group15_OMS() {
+	}
+
+	public Group15_OMS(SessionSpace space, SplittableRandom random) {
+		this.sessionSpace = space;
+		this.rng = random;
+	}
 
 	/**
 	 * Initializes the opponent model strategy. If values for the parameter t and n
@@ -49,21 +78,33 @@ public class Group15_OMS extends OMStrategy {
 	public void init(NegotiationSession negotiationSession, OpponentModel model, Map<String, Double> parameters) {
 		super.init(negotiationSession, model, parameters);
 		this.userModel = negotiationSession.getUserModel();
-		if (userModel != null) {
-			this.utilitySpace = new EstimateUtility(negotiationSession).getUtilitySpace();
-		} else {
-			this.utilitySpace = negotiationSession.getUtilitySpace();
+		// Only compute the outcome space if it is not shared by the agent
+		if (sessionSpace == null) {
+			sessionSpace = new SessionSpace(negotiationSession);
+		}
+		this.utilitySpace = sessionSpace.getUtilitySpace();
+		metrics = sessionSpace.getMetrics();
+		if (rng == null) {
+			rng = new SplittableRandom();
 		}
-		negotiationSession.setOutcomeSpace(new SortedOutcomeSpace(utilitySpace));
 
-		if (parameters.get("t") != null) {
+		if (parameters != null && parameters.get("t") != null) {
 			updateThreshold = parameters.get("t").doubleValue();
 		}
-		if (parameters.get("n") != null) {
+		if (parameters != null && parameters.get("n") != null) {
 			nBids = parameters.get("n").intValue();
 		}
 	}
 
+	@Override
+	public BidDetails getBid(List<BidDetails> allBids) {
+		long start = ComponentMetrics.start();
+		BidDetails bid = selectBid(allBids);
+		metrics.recordWindow(allBids.size());
+		metrics.record(ComponentMetrics.GET_BID, start);
+		return bid;
+	}
+
 	/**
 	 * Returns the best bid for the opponent given a set of similarly preferred
 	 * bids.
@@ -71,8 +112,7 @@ public class Group15_OMS extends OMStrategy {
 	 * @param allBids list of the bids considered for offering.
 	 * @return bid to be offered to opponent.
 	 */
-	@Override
-	public BidDetails getBid(List<BidDetails> allBids) {
+	private BidDetails selectBid(List<BidDetails> allBids) {
 
 		// If there is only a single bid, return this bid
 		if (allBids.size() == 1) {
@@ -106,7 +146,7 @@ public class Group15_OMS extends OMStrategy {
 		 * Now randomly select a bid from the top N. (Indexing starts at 0 so we want to
 		 * generate random numbers from 0 to N-1 for the top N)
 		 */
-		int randomBidIndex = (int) (Math.random() * Math.min(nBids, opponentBids.size()));
+		int randomBidIndex = rng.nextInt(Math.min(nBids, opponentBids.size()));
 
 		Bid bestOpponentBid = opponentBids.get(randomBidIndex).getBid();
 
@@ -116,6 +156,147 @@ public class Group15_OMS extends OMStrategy {
 		return bestBid;
 	}
 
+	/**
+	 * Returns the best bid for the opponent given a window of similarly preferred
+	 * bids. Only the top N bids for the opponent are kept while the window is
+	 * scored, so no objects are created per bid and the window is not sorted.
+	 * 
+	 * @param window window of the bids considered for offering.
+	 * @return bid to be offered to opponent.
+	 */
+	public BidDetails getBid(BidWindow window) {
+		long start = ComponentMetrics.start();
+		BidDetails bid = selectBid(window);
+		metrics.recordWindow(window.size());
+		metrics.record(ComponentMetrics.GET_BID, start);
+		return bid;
+	}
+
+	private BidDetails selectBid(BidWindow window) {
+
+		// If there is only a single bid, return this bid
+		if (window.size() == 1) {
+			return window.getBidDetails(0);
+		}
+
+		if (topScores.length < nBids) {
+			topScores = new double[nBids];
+			topPositions = new int[nBids];
+		}
+		topCount = 0;
+		if (windowIndices.length < sessionSpace.getCodec().getIssueCount()) {
+			windowIndices = new int[sessionSpace.getCodec().getIssueCount()];
+		}
+
+		// Evaluate each bid according to the opponent model and keep the top N, our
+		// opponent model caches evaluations by bid code between model updates
+		Group15_OM cachingModel = (model instanceof Group15_OM) ? (Group15_OM) model : null;
+		for (int i = 0; i < window.size(); i++) {
+			double evaluation;
+			if (cachingModel != null && window.hasCodes()) {
+				evaluation = cachingModel.getBidEvaluation(window.getCode(i));
+			} else if (cachingModel != null) { // bids of a domain that is not packed
+				evaluation = cachingModel.getBidEvaluation(window.getIndices(i, windowIndices));
+			} else {
+				evaluation = model.getBidEvaluation(window.getBidDetails(i).getBid());
+			}
+			if (topCount < nBids) {
+				topScores[topCount] = evaluation;
+				topPositions[topCount] = i;
+				topCount++;
+				siftUp(topCount - 1);
+			} else if (evaluation > topScores[0]) { // better than the worst of the top N
+				topScores[0] = evaluation;
+				topPositions[0] = i;
+				siftDown(0);
+			}
+		}
+
+		/**
+		 * Now randomly select a bid from the top N. (Indexing starts at 0 so we want to
+		 * generate random numbers from 0 to N-1 for the top N)
+		 */
+		int randomBidIndex = rng.nextInt(topCount);
+		int position = topPositions[randomBidIndex];
+
+		// Now return this bid in the form for our agent, our utility is known from the
+		// window.
+		return new BidDetails(window.getBidDetails(position).getBid(), window.getUtility(position),
+				negotiationSession.getTime());
+	}
+
+	/**
+	 * Returns a random bid on the Pareto frontier of the outcome space within a
+	 * utility range. Every bid on the frontier in the range is better for the
+	 * opponent than every bid which is better for us, so the choice is random like
+	 * the choice among the best bids of a window. The frontier needs our opponent
+	 * model and an outcome space that is enumerated.
+	 * 
+	 * @param lower lowest utility of the bid
+	 * @param upper highest utility of the bid
+	 * @return bid to be offered to opponent, or null if there is no frontier or it
+	 *         has no bid in the range.
+	 */
+	public BidDetails getFrontierBid(double lower, double upper) {
+		if (frontier == null) {
+			OutcomeIndex outcomeIndex = sessionSpace.getOutcomeIndex();
+			if (!(model instanceof Group15_OM) || !(outcomeIndex instanceof SortedOutcomeIndex)) {
+				return null;
+			}
+			frontier = new ParetoFrontier((SortedOutcomeIndex) outcomeIndex, (Group15_OM) model);
+		}
+		frontier.scanTo(lower);
+		int first = frontier.indexAtOrBelow(upper);
+		int end = frontier.indexBelow(lower);
+		if (first >= end) {
+			return null;
+		}
+		int i = first + rng.nextInt(end - first);
+		return new BidDetails(sessionSpace.getCodec().toBid(frontier.getCode(i)), frontier.getUtility(i),
+				negotiationSession.getTime());
+	}
+
+	// Moves a bid up the heap until its parent is not worse
+	private void siftUp(int i) {
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (topScores[parent] <= topScores[i]) {
+				return;
+			}
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	// Moves a bid down the heap until its children are not worse
+	private void siftDown(int i) {
+		while (true) {
+			int worst = i;
+			int left = 2 * i + 1;
+			int right = left + 1;
+			if (left < topCount && topScores[left] < topScores[worst]) {
+				worst = left;
+			}
+			if (right < topCount && topScores[right] < topScores[worst]) {
+				worst = right;
+			}
+			if (worst == i) {
+				return;
+			}
+			swap(i, worst);
+			i = worst;
+		}
+	}
+
+	private void swap(int i, int j) {
+		double score = topScores[i];
+		topScores[i] = topScores[j];
+		topScores[j] = score;
+		int position = topPositions[i];
+		topPositions[i] = topPositions[j];
+		topPositions[j] = position;
+	}
+
 	/**
 	 * The opponent model may be updated, unless the time is higher than a given
 	 * constant.
@@ -0,0 +1,204 @@
+package ai2018.group15;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import genius.core.AgentID;
+import genius.core.bidding.BidDetails;
+import genius.core.boaframework.NegotiationSession;
+
+/**
+ * Statistics of the bids of the opponent, shared by the components of the
+ * agent. Every bid of the opponent history is added once, the first time the
+ * statistics are read after it was received, so reading them costs constant
+ * time instead of a scan of the history. The index keeps the best bid, the
+ * last bid, the quantiles of the utilities of the most recent bids and an
+ * exponentially weighted trend of the change in utility, which is a steadier
+ * signal of concessions than the difference between the last two bids.
+ *
+ * In a multilateral session the opponent history holds the bids of all
+ * opponents. If the agent sets the sender of every bid, the quantiles and the
+ * trend are kept per opponent, like the opponent model, and are read for the
+ * opponent that made the last bid. Otherwise all bids count as bids of one
+ * opponent. The best and the last bid are those of any opponent.
+ */
+public class HistoryIndex {
+	// Number of recent bids of which the quantiles are kept
+	public static final int WINDOW_SIZE = 32;
+	// Weight of the most recent change in the trend
+	private static final double SMOOTHING = 0.2;
+
+	private NegotiationSession negotiationSession;
+	// Number of bids of the opponent history that have been added
+	private int added;
+
+	// Bid of the opponent with the highest utility for us, and the last bid
+	private BidDetails bestBid;
+	private BidDetails lastBid;
+
+	// Statistics of every opponent, by the sender of its bids
+	private HashMap<AgentID, OpponentHistory> opponents = new HashMap<AgentID, OpponentHistory>();
+	// Statistics of the bids of which the sender is not known
+	private OpponentHistory defaultOpponent = new OpponentHistory();
+	// Opponent of the bids that are added next
+	private OpponentHistory sender = defaultOpponent;
+	// Opponent that made the last bid
+	private OpponentHistory lastOpponent = defaultOpponent;
+
+	public HistoryIndex(NegotiationSession negotiationSession) {
+		this.negotiationSession = negotiationSession;
+	}
+
+	/***
+	 * Sets the sender of the bids that are received next. The bids that were
+	 * received before are added first, so they count for their own sender.
+	 *
+	 * @param opponent sender of the next bids, or null if it is not known
+	 */
+	public void setSender(AgentID opponent) {
+		update();
+		if (opponent == null) {
+			sender = defaultOpponent;
+			return;
+		}
+		sender = opponents.get(opponent);
+		if (sender == null) {
+			sender = new OpponentHistory();
+			opponents.put(opponent, sender);
+		}
+	}
+
+	/***
+	 * Adds the bids that were received since the last update
+	 */
+	private void update() {
+		List<BidDetails> history = negotiationSession.getOpponentBidHistory().getHistory();
+		for (; added < history.size(); added++) {
+			add(history.get(added));
+		}
+	}
+
+	private void add(BidDetails bid) {
+		if (bestBid == null || bid.getMyUndiscountedUtil() > bestBid.getMyUndiscountedUtil()) {
+			bestBid = bid;
+		}
+		lastBid = bid;
+		sender.add(bid.getMyUndiscountedUtil());
+		lastOpponent = sender;
+	}
+
+	/***
+	 * Returns the bid of the opponent with the highest utility for us
+	 *
+	 * @return best bid, or null if the opponent did not bid yet
+	 */
+	public BidDetails getBestBid() {
+		update();
+		return bestBid;
+	}
+
+	/***
+	 * Returns the utility for us of the most recent bid of the opponent
+	 *
+	 * @return utility of the last bid, or 0 if the opponent did not bid yet
+	 */
+	public double getLastUtility() {
+		update();
+		return lastBid == null ? 0 : lastBid.getMyUndiscountedUtil();
+	}
+
+	/***
+	 * Returns a quantile of the utilities of the most recent bids of the opponent
+	 * that made the last bid
+	 *
+	 * @param quantile quantile in [0, 1], 0.5 is the median
+	 * @return utility at the quantile, or 0 if the opponent did not bid yet
+	 */
+	public double getQuantile(double quantile) {
+		update();
+		return lastOpponent.getQuantile(quantile);
+	}
+
+	/***
+	 * Returns the number of recent bids of which the quantiles are known, which
+	 * is at most WINDOW_SIZE
+	 *
+	 * @return number of recent bids of the opponent that made the last bid
+	 */
+	public int getRecentCount() {
+		update();
+		return lastOpponent.recentCount;
+	}
+
+	/***
+	 * Returns the exponentially weighted average of the change in utility between
+	 * consecutive bids of the opponent that made the last bid. A negative trend
+	 * means the opponent is offering us less, a positive trend means it is
+	 * conceding.
+	 *
+	 * @return trend of the utility, 0 until the opponent made two bids
+	 */
+	public double getTrend() {
+		update();
+		return lastOpponent.trend;
+	}
+
+	/**
+	 * Statistics of the bids of one opponent.
+	 */
+	private static class OpponentHistory {
+		// Number of bids of the opponent
+		private int count;
+		// Utility of the last bid of the opponent
+		private double lastUtility;
+		// Average change in utility between consecutive bids
+		private double trend;
+
+		// Utilities of the most recent bids, in the order they were received
+		private double[] recent = new double[WINDOW_SIZE];
+		// The same utilities, sorted from low to high
+		private double[] sorted = new double[WINDOW_SIZE];
+		// Number of recent utilities, and the position of the next one in recent
+		private int recentCount;
+		private int recentNext;
+
+		private void add(double utility) {
+			if (count > 0) {
+				double change = utility - lastUtility;
+				trend = count == 1 ? change : trend + SMOOTHING * (change - trend);
+			}
+			lastUtility = utility;
+			count++;
+
+			// Replace the oldest utility in the sorted utilities, moving the utilities in
+			// between by one position
+			int position;
+			if (recentCount == WINDOW_SIZE) {
+				position = Arrays.binarySearch(sorted, 0, recentCount, recent[recentNext]);
+			} else {
+				position = recentCount++;
+				sorted[position] = Double.POSITIVE_INFINITY;
+			}
+			while (position > 0 && sorted[position - 1] > utility) {
+				sorted[position] = sorted[position - 1];
+				position--;
+			}
+			while (position < recentCount - 1 && sorted[position + 1] < utility) {
+				sorted[position] = sorted[position + 1];
+				position++;
+			}
+			sorted[position] = utility;
+			recent[recentNext] = utility;
+			recentNext = (recentNext + 1) % WINDOW_SIZE;
+		}
+
+		private double getQuantile(double quantile) {
+			if (recentCount == 0) {
+				return 0;
+			}
+			int position = (int) Math.round(quantile * (recentCount - 1));
+			return sorted[Math.max(0, Math.min(recentCount - 1, position))];
+		}
+	}
+}
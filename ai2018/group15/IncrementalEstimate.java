@@ -0,0 +1,573 @@
+package ai2018.group15;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import genius.core.Bid;
+import genius.core.utility.AbstractUtilitySpace;
+
+/**
+ * Estimates the same utility tables as EstimateUtility, but keeps the
+ * accumulators so the bid ranking can change afterwards. The rank weight i + 1
+ * of a pair or bid is only divided by the number of bids in EstimateUtility,
+ * which the normalization cancels out, so the accumulators hold the exact
+ * integer sums and an update does not drift.
+ *
+ * When a bid is inserted or removed, only the terms next to its position change
+ * and the terms above it move one rank, which adds or subtracts the number of
+ * terms above it from every accumulator. Those numbers are counted with a
+ * Fenwick tree per accumulator, over labels that keep the order of the ranked
+ * bids. Labels are spaced out, so a new bid gets a label between its
+ * neighbours and the labels of the other bids stay the same. Only when the
+ * labels around a position run out, the bids in the smallest surrounding range
+ * of labels that is sparse enough are spread out again. An update therefore
+ * costs the number of accumulators times the logarithm of the number of
+ * labels, instead of growing with the size of the ranking.
+ *
+ * The ranking is ordered from the worst to the best bid, and as in
+ * EstimateUtility the best bid does not add to the value weights. The terms of
+ * the pair (i, i + 1) and of bid i are counted at the label of bid i.
+ *
+ * The trees take the number of accumulators times twice to four times the
+ * number of ranked bids in memory, where EstimateUtility only needs the
+ * accumulators, so a ranking without an earlier estimate is better estimated
+ * with EstimateUtility.
+ */
+public class IncrementalEstimate {
+	// Smallest number of labels
+	private static final int MIN_CAPACITY = 64;
+	// Labels left free after a bid that is added as the best bid
+	private static final int APPEND_GAP = 8;
+
+	private BidCodec codec;
+	// Value indices of the ranked bids, from the worst to the best bid
+	private List<int[]> ranking = new ArrayList<int[]>();
+	// Label of every ranked bid, rising with the rank, from 1 to capacity
+	private int[] labels = new int[16];
+
+	// Accumulators of the issue weights and of the values, the values of issue j
+	// start at valueOffsets[j]
+	private int[] valueOffsets;
+	private int accumulatorCount;
+	// Rank weighted sums of the pairs and bids
+	private long[] weighted;
+	// Number of pairs and bids that add to every accumulator
+	private long[] counts;
+	// Number of labels
+	private int capacity = MIN_CAPACITY;
+	// Fenwick tree of the terms of every accumulator by label, the tree of
+	// accumulator k starts at k * (capacity + 1)
+	private int[] trees;
+
+	public IncrementalEstimate(BidCodec codec) {
+		this.codec = codec;
+		int issueCount = codec.getIssueCount();
+		valueOffsets = new int[issueCount];
+		int size = issueCount;
+		for (int j = 0; j < issueCount; j++) {
+			valueOffsets[j] = size;
+			size += codec.getValueCount(j);
+		}
+		accumulatorCount = size;
+		weighted = new long[size];
+		counts = new long[size];
+		trees = new int[size * (capacity + 1)];
+	}
+
+	/***
+	 * Creates an estimate of a bid ranking
+	 *
+	 * @param codec    codec of the domain
+	 * @param bidOrder ranked bids, from the worst to the best bid
+	 */
+	public IncrementalEstimate(BidCodec codec, List<Bid> bidOrder) {
+		this(codec, toIndices(codec, bidOrder));
+	}
+
+	/***
+	 * Creates an estimate of a ranking at once: the labels are spread evenly, the
+	 * accumulators are summed in one pass over the ranking and every tree is
+	 * built from its counts in linear time
+	 *
+	 * @param codec   codec of the domain
+	 * @param ranking value indices of the ranked bids, from the worst to the best
+	 *                bid
+	 */
+	IncrementalEstimate(BidCodec codec, int[][] ranking) {
+		this(codec);
+		int n = ranking.length;
+		while (n > capacity / 2) {
+			capacity *= 2;
+		}
+		labels = new int[Math.max(labels.length, n)];
+		for (int i = 0; i < n; i++) {
+			this.ranking.add(ranking[i]);
+			labels[i] = 1 + (int) ((long) i * capacity / n);
+		}
+
+		trees = new int[accumulatorCount * (capacity + 1)];
+		for (int i = 0; i < n - 1; i++) {
+			int[] bid = ranking[i];
+			int[] next = ranking[i + 1];
+			for (int j = 0; j < bid.length; j++) {
+				if (bid[j] == next[j]) {
+					countTerm(j, labels[i], i + 1L);
+				}
+				countTerm(valueOffsets[j] + bid[j], labels[i], i + 1L);
+			}
+		}
+		// Every node adds its count to its parent, which covers it
+		for (int k = 0; k < accumulatorCount; k++) {
+			int base = k * (capacity + 1);
+			for (int x = 1; x <= capacity; x++) {
+				int parent = x + (x & -x);
+				if (parent <= capacity) {
+					trees[base + parent] += trees[base + x];
+				}
+			}
+		}
+	}
+
+	private static int[][] toIndices(BidCodec codec, List<Bid> bidOrder) {
+		int[][] ranking = new int[bidOrder.size()][];
+		for (int i = 0; i < ranking.length; i++) {
+			ranking[i] = codec.toIndices(bidOrder.get(i), new int[codec.getIssueCount()]);
+		}
+		return ranking;
+	}
+
+	public int size() {
+		return ranking.size();
+	}
+
+	/***
+	 * Returns the value indices of a ranked bid
+	 *
+	 * @param position rank of the bid
+	 * @return value index of every issue of the bid
+	 */
+	public int[] getIndices(int position) {
+		return ranking.get(position).clone();
+	}
+
+	/***
+	 * Adds a bid as the new best bid of the ranking
+	 *
+	 * @param bid bid to add
+	 */
+	public void add(Bid bid) {
+		insert(ranking.size(), bid);
+	}
+
+	/***
+	 * Inserts a newly ranked bid
+	 *
+	 * @param position rank of the bid, 0 for the worst bid and size() for the best
+	 * @param bid      bid to insert
+	 */
+	public void insert(int position, Bid bid) {
+		insert(position, codec.toIndices(bid, new int[codec.getIssueCount()]));
+	}
+
+	/***
+	 * Moves a bid to another rank
+	 *
+	 * @param from current rank of the bid
+	 * @param to   new rank of the bid, in the ranking without the bid
+	 */
+	public void move(int from, int to) {
+		insert(to, remove(from));
+	}
+
+	/***
+	 * Changes the ranking to a new ranking. The bids that keep their order are
+	 * left in place, the other bids are removed and inserted at their new rank,
+	 * so the update costs the number of changed bids.
+	 *
+	 * @param bidOrder new ranking, from the worst to the best bid
+	 */
+	public void update(List<Bid> bidOrder) {
+		int issueCount = codec.getIssueCount();
+		int[][] target = new int[bidOrder.size()][];
+		// Ranks of the bids in the new ranking, a bid can be ranked more than once
+		HashMap<RankedBid, ArrayDeque<Integer>> positions = new HashMap<RankedBid, ArrayDeque<Integer>>();
+		for (int i = 0; i < target.length; i++) {
+			target[i] = codec.toIndices(bidOrder.get(i), new int[issueCount]);
+			RankedBid key = new RankedBid(target[i]);
+			ArrayDeque<Integer> queue = positions.get(key);
+			if (queue == null) {
+				queue = new ArrayDeque<Integer>();
+				positions.put(key, queue);
+			}
+			queue.add(i);
+		}
+
+		// New rank of every ranked bid, or -1 if it is no longer ranked
+		int n = ranking.size();
+		int[] newPositions = new int[n];
+		for (int r = 0; r < n; r++) {
+			ArrayDeque<Integer> queue = positions.get(new RankedBid(ranking.get(r)));
+			newPositions[r] = queue == null || queue.isEmpty() ? -1 : queue.poll();
+		}
+
+		// The longest run of bids in the same order stays, the rest is ranked again
+		boolean[] kept = keptInOrder(newPositions);
+		boolean[] placed = new boolean[target.length];
+		for (int r = n - 1; r >= 0; r--) {
+			if (kept[r]) {
+				placed[newPositions[r]] = true;
+			} else {
+				remove(r);
+			}
+		}
+		// Every bid of a lower new rank is in place, so the new rank is the position
+		for (int i = 0; i < target.length; i++) {
+			if (!placed[i]) {
+				insert(i, target[i]);
+			}
+		}
+	}
+
+	/***
+	 * Removes a bid from the ranking
+	 *
+	 * @param position rank of the bid
+	 * @return value indices of the removed bid
+	 */
+	public int[] remove(int position) {
+		int n = ranking.size();
+		if (position < 0 || position >= n) {
+			throw new IndexOutOfBoundsException("Rank " + position + " of " + n + " bids");
+		}
+
+		if (position <= n - 2) {
+			addTerms(position, -1);
+		}
+		if (position >= 1) {
+			addTerms(position - 1, -1);
+		}
+		// The pairs and bids above the position move one rank down
+		if (position <= n - 2) {
+			shiftFrom(labels[position + 1], -1);
+		}
+
+		int[] removed = ranking.remove(position);
+		System.arraycopy(labels, position + 1, labels, position, n - position - 1);
+		if (position >= 1 && position <= n - 2) {
+			addTerms(position - 1, 1);
+		}
+		return removed;
+	}
+
+	/***
+	 * Inserts a newly ranked bid
+	 *
+	 * @param position rank of the bid, 0 for the worst bid and size() for the best
+	 * @param indices  value index of every issue of the bid
+	 */
+	public void insert(int position, int[] indices) {
+		int n = ranking.size();
+		if (position < 0 || position > n) {
+			throw new IndexOutOfBoundsException("Rank " + position + " of " + n + " bids");
+		}
+
+		// The label is found first, spreading out labels moves the terms of the bids
+		int label = allocateLabel(position);
+		if (position >= 1 && position <= n - 1) {
+			addTerms(position - 1, -1);
+		}
+		// The pairs and bids from the position move one rank up
+		if (position < n) {
+			shiftFrom(labels[position], 1);
+		}
+
+		if (n == labels.length) {
+			labels = Arrays.copyOf(labels, n * 2);
+		}
+		System.arraycopy(labels, position, labels, position + 1, n - position);
+		labels[position] = label;
+		ranking.add(position, indices);
+
+		if (position >= 1) {
+			addTerms(position - 1, 1);
+		}
+		if (position < n) {
+			addTerms(position, 1);
+		}
+	}
+
+	/***
+	 * Returns the estimated weights and value utilities of the current ranking
+	 *
+	 * @return estimated weights and value utilities
+	 */
+	public UtilityTables getUtilityTables() {
+		int issueCount = valueOffsets.length;
+		double[] weights = new double[issueCount];
+		double weightSum = 0;
+		for (int j = 0; j < issueCount; j++) {
+			weightSum += weighted[j];
+		}
+		for (int j = 0; j < issueCount; j++) {
+			weights[j] = weighted[j] / weightSum;
+		}
+
+		double[][] valueWeights = new double[issueCount][];
+		for (int j = 0; j < issueCount; j++) {
+			valueWeights[j] = new double[codec.getValueCount(j)];
+			double valueSum = 0;
+			for (int v = 0; v < valueWeights[j].length; v++) {
+				valueSum += weighted[valueOffsets[j] + v];
+			}
+			for (int v = 0; v < valueWeights[j].length; v++) {
+				valueWeights[j][v] = weighted[valueOffsets[j] + v] / valueSum;
+			}
+		}
+		return new UtilityTables(weights, valueWeights);
+	}
+
+	public AbstractUtilitySpace getUtilitySpace() {
+		return getUtilityTables().toUtilitySpace(codec);
+	}
+
+	/***
+	 * Adds or removes the terms of the pair (i, i + 1) and of bid i: the issue
+	 * weights of the issues on which both bids agree and the value weights of bid
+	 * i, with the rank weight i + 1
+	 *
+	 * @param i    rank of the lower bid of the pair
+	 * @param sign 1 to add the terms, -1 to remove them
+	 */
+	private void addTerms(int i, int sign) {
+		int[] bid = ranking.get(i);
+		int[] next = ranking.get(i + 1);
+		int label = labels[i];
+		for (int j = 0; j < bid.length; j++) {
+			if (bid[j] == next[j]) {
+				addTerm(j, label, sign, i + 1L);
+			}
+			addTerm(valueOffsets[j] + bid[j], label, sign, i + 1L);
+		}
+	}
+
+	// Counts a term at its label only, before the trees are built
+	private void countTerm(int k, int label, long rankWeight) {
+		weighted[k] += rankWeight;
+		counts[k]++;
+		trees[k * (capacity + 1) + label]++;
+	}
+
+	private void addTerm(int k, int label, int sign, long rankWeight) {
+		weighted[k] += sign * rankWeight;
+		counts[k] += sign;
+		int base = k * (capacity + 1);
+		for (int x = label; x <= capacity; x += x & -x) {
+			trees[base + x] += sign;
+		}
+	}
+
+	/***
+	 * Moves all terms at or above a label one rank up or down
+	 *
+	 * @param label label of the lowest bid that moves
+	 * @param sign  1 to move the terms up, -1 to move them down
+	 */
+	private void shiftFrom(int label, int sign) {
+		for (int k = 0; k < accumulatorCount; k++) {
+			if (counts[k] == 0) {
+				continue;
+			}
+			// Terms below the label
+			long below = 0;
+			int base = k * (capacity + 1);
+			for (int x = label - 1; x > 0; x -= x & -x) {
+				below += trees[base + x];
+			}
+			weighted[k] += sign * (counts[k] - below);
+		}
+	}
+
+	/***
+	 * Returns a free label between the bids next to a new rank, the labels of
+	 * the surrounding bids are spread out first if there is none
+	 *
+	 * @param position rank of the new bid
+	 * @return label of the new bid
+	 */
+	private int allocateLabel(int position) {
+		int n = ranking.size();
+		int low = position > 0 ? labels[position - 1] : 0;
+		int high = position < n ? labels[position] : capacity + 1;
+		if (high - low >= 2) {
+			if (position == n) {
+				return low + Math.min(APPEND_GAP, (high - low) / 2);
+			}
+			return (low + high) >>> 1;
+		}
+
+		// The smallest aligned range of labels around the position which is sparse
+		// enough, the larger the range the lower the allowed density
+		int levels = Integer.numberOfTrailingZeros(capacity);
+		int point = Math.max(low, 1) - 1;
+		for (int level = 1; level <= levels; level++) {
+			int first = ((point >>> level) << level) + 1;
+			int last = first + (1 << level) - 1;
+			int from = firstAtOrAbove(first);
+			int to = firstAtOrAbove(last + 1);
+			double density = 1 - level / (2.0 * levels);
+			if (to - from + 1 <= density * (1 << level)) {
+				return spread(from, to, position, first, 1 << level, true);
+			}
+		}
+
+		// All labels are too dense, the number of labels is doubled and the trees are
+		// counted again
+		int newCapacity = capacity * 2;
+		while (n + 1 > newCapacity / 2) {
+			newCapacity *= 2;
+		}
+		capacity = newCapacity;
+		int label = spread(0, n, position, 1, capacity, false);
+		trees = new int[accumulatorCount * (capacity + 1)];
+		Arrays.fill(counts, 0);
+		for (int i = 0; i < n - 1; i++) {
+			int[] bid = ranking.get(i);
+			int[] next = ranking.get(i + 1);
+			for (int j = 0; j < bid.length; j++) {
+				if (bid[j] == next[j]) {
+					addTerm(j, labels[i], 1, 0);
+				}
+				addTerm(valueOffsets[j] + bid[j], labels[i], 1, 0);
+			}
+		}
+		return label;
+	}
+
+	/***
+	 * Spreads the labels of a range of ranks and of a new bid evenly over a range
+	 * of labels
+	 *
+	 * @param from     first rank in the range
+	 * @param to       last rank in the range (exclusive)
+	 * @param position rank of the new bid, from the first to the last rank
+	 * @param first    first label of the range
+	 * @param width    number of labels in the range
+	 * @param move     whether the terms of the bids are moved in the trees
+	 * @return label of the new bid
+	 */
+	private int spread(int from, int to, int position, int first, int width, boolean move) {
+		int n = ranking.size();
+		int slots = to - from + 1;
+		int newLabel = 0;
+		for (int s = 0; s < slots; s++) {
+			int label = first + (int) ((long) s * width / slots);
+			if (from + s == position) {
+				newLabel = label;
+				continue;
+			}
+			int i = from + s - (from + s > position ? 1 : 0);
+			if (labels[i] != label) {
+				// Only the bids below the best bid have terms
+				if (move && i < n - 1) {
+					moveTerms(i, label);
+				}
+				labels[i] = label;
+			}
+		}
+		return newLabel;
+	}
+
+	// Moves the terms of bid i to a new label
+	private void moveTerms(int i, int label) {
+		int[] bid = ranking.get(i);
+		int[] next = ranking.get(i + 1);
+		for (int j = 0; j < bid.length; j++) {
+			if (bid[j] == next[j]) {
+				addTerm(j, labels[i], -1, 0);
+				addTerm(j, label, 1, 0);
+			}
+			addTerm(valueOffsets[j] + bid[j], labels[i], -1, 0);
+			addTerm(valueOffsets[j] + bid[j], label, 1, 0);
+		}
+	}
+
+	// Returns the first rank with a label at or above a label
+	private int firstAtOrAbove(int label) {
+		int low = 0;
+		int high = ranking.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (labels[mid] < label) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/***
+	 * Marks the longest run of bids whose new ranks rise with their current
+	 * rank, so they can stay in place
+	 *
+	 * @param newPositions new rank of every bid, or -1 if it is no longer ranked
+	 * @return whether every bid stays in place
+	 */
+	private static boolean[] keptInOrder(int[] newPositions) {
+		int n = newPositions.length;
+		// Bid that ends the longest rising run of every length, and the bid before
+		// every bid in its run
+		int[] ends = new int[n];
+		int[] previous = new int[n];
+		int length = 0;
+		for (int r = 0; r < n; r++) {
+			if (newPositions[r] < 0) {
+				continue;
+			}
+			int low = 0;
+			int high = length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (newPositions[ends[mid]] < newPositions[r]) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			previous[r] = low > 0 ? ends[low - 1] : -1;
+			ends[low] = r;
+			length = Math.max(length, low + 1);
+		}
+		boolean[] kept = new boolean[n];
+		for (int r = length > 0 ? ends[length - 1] : -1; r >= 0; r = previous[r]) {
+			kept[r] = true;
+		}
+		return kept;
+	}
+
+	/**
+	 * Value indices of a bid, compared by their contents.
+	 */
+	private static final class RankedBid {
+		private final int[] indices;
+		private final int hash;
+
+		RankedBid(int[] indices) {
+			this.indices = indices;
+			this.hash = Arrays.hashCode(indices);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof RankedBid && Arrays.equals(indices, ((RankedBid) other).indices);
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package ai2018.group15;
+
+/**
+ * Histogram of latencies in nanoseconds. Every power of two is split into four
+ * buckets, so a percentile is known within 25% while the histogram only needs
+ * a fixed array of counts. Recording a latency does not create any objects.
+ */
+public class LatencyHistogram {
+	// Number of buckets per power of two
+	private static final int SUB_BUCKETS = 4;
+	private static final int SUB_BITS = 2;
+
+	private long[] counts = new long[SUB_BUCKETS * 62];
+	private long count;
+	private long total;
+	private long max;
+
+	/***
+	 * Adds a latency to the histogram
+	 *
+	 * @param nanos latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts[bucket(nanos)]++;
+		count++;
+		total += nanos;
+		if (nanos > max) {
+			max = nanos;
+		}
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getTotal() {
+		return total;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public double getMean() {
+		return count == 0 ? 0 : (double) total / count;
+	}
+
+	/***
+	 * Returns an upper bound of a percentile of the recorded latencies
+	 *
+	 * @param percentile percentile between 0 and 100
+	 * @return upper bound of the bucket which holds the percentile, in nanoseconds
+	 */
+	public long getPercentile(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(percentile / 100 * count);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= Math.max(rank, 1)) {
+				return Math.min(upperBound(i), max);
+			}
+		}
+		return max;
+	}
+
+	private static int bucket(long nanos) {
+		if (nanos < SUB_BUCKETS) {
+			return (int) nanos;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return SUB_BUCKETS * (exponent - SUB_BITS + 1) + sub;
+	}
+
+	private static long upperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+		long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BITS);
+		return lower + (1L << (exponent - SUB_BITS)) - 1;
+	}
+}
@@ -0,0 +1,202 @@
+package ai2018.group15;
+
+import genius.core.issue.IssueDiscrete;
+import genius.core.utility.AdditiveUtilitySpace;
+import genius.core.utility.EvaluatorDiscrete;
+
+/**
+ * Outcome space which generates the bids within a utility range on demand,
+ * instead of enumerating and sorting all outcomes. The utility of a bid is the
+ * sum of the weighted evaluations of its values, so per issue the values are
+ * sorted by their contribution and a branch and bound search only visits the
+ * parts of the outcome space that can contain a bid in the range. A query
+ * generates at most as many bids as the window can hold. Bids of domains too
+ * large to pack into a long code are generated as value indices.
+ */
+public class LazyOutcomeSpace implements OutcomeIndex {
+	// Default maximum number of outcomes for which the outcome space is enumerated
+	public static final long DEFAULT_MAX_OUTCOMES = 250000;
+	// Margin for rounding errors when pruning with the bounds of a range
+	private static final double EPSILON = 1e-12;
+
+	private BidCodec codec;
+	// Contribution of every value to the utility, indexed by issue and value index
+	private double[][] contribution;
+	// Value indices of every issue, sorted from high to low contribution
+	private int[][] order;
+	// Maximum and minimum utility that the issues from an issue onwards can add
+	private double[] maxRest;
+	private double[] minRest;
+
+	// State of the current search
+	private int[] indices;
+	private BidWindow target;
+	private int found;
+	private double lower;
+	private double upper;
+
+	public LazyOutcomeSpace(AdditiveUtilitySpace utilitySpace, BidCodec codec) {
+		this.codec = codec;
+		int issueCount = codec.getIssueCount();
+		contribution = new double[issueCount][];
+		order = new int[issueCount][];
+		maxRest = new double[issueCount + 1];
+		minRest = new double[issueCount + 1];
+		indices = new int[issueCount];
+
+		for (int i = 0; i < issueCount; i++) {
+			IssueDiscrete issue = codec.getIssue(i);
+			double weight = utilitySpace.getWeight(issue.getNumber());
+			EvaluatorDiscrete evaluator = (EvaluatorDiscrete) utilitySpace.getEvaluator(issue.getNumber());
+			contribution[i] = new double[codec.getValueCount(i)];
+			for (int v = 0; v < contribution[i].length; v++) {
+				try {
+					contribution[i][v] = weight * evaluator.getEvaluation(codec.getValue(i, v));
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+			order[i] = sortByContribution(contribution[i]);
+		}
+
+		for (int i = issueCount - 1; i >= 0; i--) {
+			maxRest[i] = maxRest[i + 1] + contribution[i][order[i][0]];
+			minRest[i] = minRest[i + 1] + contribution[i][order[i][order[i].length - 1]];
+		}
+	}
+
+	/***
+	 * Checks whether the outcome space of a domain is small enough to enumerate
+	 * 
+	 * @param codec       codec of the domain
+	 * @param maxOutcomes maximum number of outcomes to enumerate
+	 * @return whether the outcome space can be enumerated
+	 */
+	public static boolean isEnumerable(BidCodec codec, long maxOutcomes) {
+		return codec.isPacked() && codec.getNumberOfBids() <= maxOutcomes;
+	}
+
+	@Override
+	public BidCodec getCodec() {
+		return codec;
+	}
+
+	/***
+	 * Returns the utility of the best bid, summed in the same order as the search
+	 * so it is exactly equal to the generated utility of that bid
+	 */
+	@Override
+	public double getMaxUtility() {
+		double utility = 0;
+		for (int i = 0; i < order.length; i++) {
+			utility += contribution[i][order[i][0]];
+		}
+		return utility;
+	}
+
+	/***
+	 * Returns the utility of the worst bid, summed in the same order as the search
+	 * so it is exactly equal to the generated utility of that bid
+	 */
+	@Override
+	public double getMinUtility() {
+		double utility = 0;
+		for (int i = 0; i < order.length; i++) {
+			utility += contribution[i][order[i][order[i].length - 1]];
+		}
+		return utility;
+	}
+
+	@Override
+	public void query(double lower, double upper, BidWindow window) {
+		this.lower = lower;
+		this.upper = upper;
+		target = window;
+		found = 0;
+		search(0, 0);
+
+		// Sort the generated bids from high to low utility
+		long[] codes = window.getCodeBuffer();
+		double[] utilities = window.getUtilityBuffer();
+		int[][] bids = codec.isPacked() ? null : window.getIndexBuffer(indices.length);
+		for (int i = 1; i < found; i++) {
+			long code = codes[i];
+			int[] bid = bids == null ? null : bids[i];
+			double utility = utilities[i];
+			int j = i - 1;
+			while (j >= 0 && utilities[j] < utility) {
+				codes[j + 1] = codes[j];
+				if (bids != null) {
+					bids[j + 1] = bids[j];
+				}
+				utilities[j + 1] = utilities[j];
+				j--;
+			}
+			codes[j + 1] = code;
+			if (bids != null) {
+				bids[j + 1] = bid;
+			}
+			utilities[j + 1] = utility;
+		}
+		window.setGenerated(codec, found);
+		target = null;
+	}
+
+	/***
+	 * Depth first search over the values of the issues, starting with the values
+	 * with the highest contribution. Branches that can not reach the range are
+	 * pruned.
+	 * 
+	 * @param issue   index of the issue to choose a value for
+	 * @param utility utility of the values chosen so far
+	 */
+	private void search(int issue, double utility) {
+		if (issue == order.length) {
+			if (utility >= lower && utility <= upper) {
+				if (codec.isPacked()) {
+					target.getCodeBuffer()[found] = codec.encode(indices);
+				} else {
+					System.arraycopy(indices, 0, target.getIndexBuffer(indices.length)[found], 0, indices.length);
+				}
+				target.getUtilityBuffer()[found] = utility;
+				found++;
+			}
+			return;
+		}
+		int[] values = order[issue];
+		for (int k = 0; k < values.length && found < target.getCapacity(); k++) {
+			double partial = utility + contribution[issue][values[k]];
+			if (partial + maxRest[issue + 1] < lower - EPSILON) {
+				break; // the remaining values of this issue contribute even less
+			}
+			if (partial + minRest[issue + 1] > upper + EPSILON) {
+				continue; // too high, a value with a lower contribution may fit
+			}
+			indices[issue] = values[k];
+			search(issue + 1, partial);
+		}
+	}
+
+	/***
+	 * Returns the value indices sorted from high to low contribution
+	 * 
+	 * @param contributions contribution of every value
+	 * @return sorted value indices
+	 */
+	private static int[] sortByContribution(double[] contributions) {
+		int[] sorted = new int[contributions.length];
+		for (int v = 0; v < sorted.length; v++) {
+			sorted[v] = v;
+		}
+		for (int i = 1; i < sorted.length; i++) {
+			int value = sorted[i];
+			int j = i - 1;
+			while (j >= 0 && contributions[sorted[j]] < contributions[value]) {
+				sorted[j + 1] = sorted[j];
+				j--;
+			}
+			sorted[j + 1] = value;
+		}
+		return sorted;
+	}
+}
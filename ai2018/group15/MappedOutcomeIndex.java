@@ -0,0 +1,353 @@
+package ai2018.group15;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import genius.core.bidding.BidDetails;
+import genius.core.issue.IssueDiscrete;
+import genius.core.utility.AdditiveUtilitySpace;
+import genius.core.utility.EvaluatorDiscrete;
+
+/**
+ * Outcome index which is kept in a memory mapped file instead of on the heap.
+ * The file holds the utilities of all outcomes sorted from high to low,
+ * followed by their codes in the same order. It is built once per profile and
+ * then mapped read only, so every session and every JVM on the machine shares
+ * the same pages. Bids are only created when they are requested, and are not
+ * kept.
+ *
+ * The outcomes are enumerated and sorted within the mapped file while it is
+ * built, so building the file does not need memory for the outcome space either.
+ * The writable mapping is released as soon as the file is built, because a file
+ * that is mapped can not be moved or deleted on Windows.
+ */
+public class MappedOutcomeIndex implements SortedOutcomeIndex {
+	// Whether large outcome spaces are mapped, set by the property group15.mapped
+	public static final boolean ENABLED = Boolean.getBoolean("group15.mapped");
+	// Largest number of outcomes of which the utilities fit in a single mapping
+	public static final long MAX_OUTCOMES = Integer.MAX_VALUE / 8;
+
+	// Marks the start of a file
+	private static final int MAGIC = 0x4731354d;
+	// Version of the file format
+	private static final int VERSION = 1;
+	// Size of the header: magic, version, profile hash and number of outcomes
+	private static final int HEADER_SIZE = 24;
+	// Ranges below this size are sorted with insertion sort
+	private static final int INSERTION_SORT_SIZE = 16;
+
+	private BidCodec codec;
+	private int size;
+	// Utility of every outcome, sorted from high to low
+	private DoubleBuffer utilities;
+	// Code of every outcome, same order as utilities
+	private LongBuffer codes;
+
+	private MappedOutcomeIndex(BidCodec codec, int size, DoubleBuffer utilities, LongBuffer codes) {
+		this.codec = codec;
+		this.size = size;
+		this.utilities = utilities;
+		this.codes = codes;
+	}
+
+	/***
+	 * Checks whether the outcome space of a domain can be mapped
+	 *
+	 * @param codec codec of the domain
+	 * @return whether the outcome space can be mapped
+	 */
+	public static boolean isMappable(BidCodec codec) {
+		return codec.isPacked() && codec.getNumberOfBids() <= MAX_OUTCOMES;
+	}
+
+	/***
+	 * Returns the size of the file that holds the outcome space of a domain
+	 *
+	 * @param codec codec of the domain
+	 * @return size of the file in bytes
+	 */
+	public static long getFileSize(BidCodec codec) {
+		return HEADER_SIZE + 16 * codec.getNumberOfBids();
+	}
+
+	/***
+	 * Maps the outcome index of a file
+	 *
+	 * @param file        file of the index
+	 * @param profileHash hash of the profile
+	 * @param codec       codec of the domain
+	 * @return mapped index, or null if the file is not a valid index of the profile
+	 * @throws IOException if the file can not be read
+	 */
+	public static MappedOutcomeIndex open(File file, long profileHash, BidCodec codec) throws IOException {
+		if (!file.isFile() || !isMappable(codec)) {
+			return null;
+		}
+		try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+			long size = codec.getNumberOfBids();
+			if (in.length() != getFileSize(codec) || in.readInt() != MAGIC || in.readInt() != VERSION
+					|| in.readLong() != profileHash || in.readLong() != size) {
+				return null;
+			}
+			// The mappings stay valid after the channel is closed
+			FileChannel channel = in.getChannel();
+			DoubleBuffer utilities = channel.map(MapMode.READ_ONLY, HEADER_SIZE, 8 * size).asDoubleBuffer();
+			LongBuffer codes = channel.map(MapMode.READ_ONLY, HEADER_SIZE + 8 * size, 8 * size).asLongBuffer();
+			return new MappedOutcomeIndex(codec, (int) size, utilities, codes);
+		}
+	}
+
+	/***
+	 * Writes the outcome index of an additive utility space to a file. Every
+	 * outcome is enumerated and the outcomes are sorted within the mapped file,
+	 * which is unmapped again before the method returns.
+	 *
+	 * @param file         file of the index, should not be in use
+	 * @param profileHash  hash of the profile
+	 * @param codec        codec of the domain
+	 * @param utilitySpace utility space of the profile
+	 * @throws IOException if the file can not be written
+	 */
+	public static void build(File file, long profileHash, BidCodec codec, AdditiveUtilitySpace utilitySpace)
+			throws IOException {
+		if (!isMappable(codec)) {
+			throw new IllegalArgumentException("Domain is too large to map its outcomes");
+		}
+		int issueCount = codec.getIssueCount();
+		double[][] contribution = new double[issueCount][];
+		for (int i = 0; i < issueCount; i++) {
+			IssueDiscrete issue = codec.getIssue(i);
+			double weight = utilitySpace.getWeight(issue.getNumber());
+			EvaluatorDiscrete evaluator = (EvaluatorDiscrete) utilitySpace.getEvaluator(issue.getNumber());
+			contribution[i] = new double[codec.getValueCount(i)];
+			for (int v = 0; v < contribution[i].length; v++) {
+				try {
+					contribution[i][v] = weight * evaluator.getEvaluation(codec.getValue(i, v));
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}
+
+		int size = (int) codec.getNumberOfBids();
+		try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+			out.setLength(getFileSize(codec));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(profileHash);
+			out.writeLong(size);
+
+			FileChannel channel = out.getChannel();
+			MappedByteBuffer utilityBytes = channel.map(MapMode.READ_WRITE, HEADER_SIZE, 8L * size);
+			MappedByteBuffer codeBytes = channel.map(MapMode.READ_WRITE, HEADER_SIZE + 8L * size, 8L * size);
+			DoubleBuffer utilities = utilityBytes.asDoubleBuffer();
+			LongBuffer codes = codeBytes.asLongBuffer();
+
+			// Enumerate the outcomes in code order, the first issue changes fastest
+			int[] indices = new int[issueCount];
+			for (int code = 0; code < size; code++) {
+				double utility = 0;
+				for (int i = 0; i < issueCount; i++) {
+					utility += contribution[i][indices[i]];
+				}
+				utilities.put(code, utility);
+				codes.put(code, code);
+				for (int i = 0; i < issueCount && ++indices[i] == contribution[i].length; i++) {
+					indices[i] = 0;
+				}
+			}
+
+			sort(utilities, codes, 0, size - 1);
+			utilityBytes.force();
+			codeBytes.force();
+			unmap(utilityBytes);
+			unmap(codeBytes);
+		}
+	}
+
+	/***
+	 * Releases a mapping now instead of when it is garbage collected. The buffer
+	 * and its views must not be used afterwards. There is no public API for this,
+	 * so the cleaner of the buffer is called through reflection: with
+	 * Unsafe.invokeCleaner since Java 9, and through the buffer itself on Java 8.
+	 * If neither is available the mapping is released by the garbage collector.
+	 *
+	 * @param buffer mapping to release
+	 */
+	private static void unmap(MappedByteBuffer buffer) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner;
+			try {
+				invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			} catch (NoSuchMethodException e) { // Java 8
+				Method getCleaner = buffer.getClass().getMethod("cleaner");
+				getCleaner.setAccessible(true);
+				Object cleaner = getCleaner.invoke(buffer);
+				if (cleaner != null) {
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+				return;
+			}
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public BidCodec getCodec() {
+		return codec;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public double getUtility(int index) {
+		return utilities.get(index);
+	}
+
+	@Override
+	public long getCode(int index) {
+		return codes.get(index);
+	}
+
+	@Override
+	public BidDetails getBidDetails(int index) {
+		return new BidDetails(codec.toBid(codes.get(index)), utilities.get(index));
+	}
+
+	@Override
+	public double getMaxUtility() {
+		return utilities.get(0);
+	}
+
+	@Override
+	public double getMinUtility() {
+		return utilities.get(size - 1);
+	}
+
+	@Override
+	public int indexAtOrBelow(double utility) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (utilities.get(mid) <= utility) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	@Override
+	public int indexBelow(double utility) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (utilities.get(mid) < utility) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	@Override
+	public void query(double lower, double upper, BidWindow window) {
+		int start = indexAtOrBelow(upper);
+		int end = indexBelow(lower);
+		window.setRange(this, start, Math.max(0, end - start));
+	}
+
+	/***
+	 * Sorts a range of outcomes from high to low utility with quicksort. The
+	 * smaller part is sorted recursively, so the depth of the recursion is
+	 * logarithmic.
+	 *
+	 * @param utilities utility of every outcome
+	 * @param codes     code of every outcome
+	 * @param low       first outcome of the range
+	 * @param high      last outcome of the range, inclusive
+	 */
+	private static void sort(DoubleBuffer utilities, LongBuffer codes, int low, int high) {
+		while (high - low >= INSERTION_SORT_SIZE) {
+			// Median of three as pivot
+			int mid = (low + high) >>> 1;
+			if (utilities.get(mid) > utilities.get(low)) {
+				swap(utilities, codes, low, mid);
+			}
+			if (utilities.get(high) > utilities.get(low)) {
+				swap(utilities, codes, low, high);
+			}
+			if (utilities.get(high) > utilities.get(mid)) {
+				swap(utilities, codes, mid, high);
+			}
+			double pivot = utilities.get(mid);
+
+			int i = low;
+			int j = high;
+			while (i <= j) {
+				while (utilities.get(i) > pivot) {
+					i++;
+				}
+				while (utilities.get(j) < pivot) {
+					j--;
+				}
+				if (i <= j) {
+					swap(utilities, codes, i, j);
+					i++;
+					j--;
+				}
+			}
+
+			if (j - low < high - i) {
+				sort(utilities, codes, low, j);
+				low = i;
+			} else {
+				sort(utilities, codes, i, high);
+				high = j;
+			}
+		}
+
+		for (int i = low + 1; i <= high; i++) {
+			double utility = utilities.get(i);
+			long code = codes.get(i);
+			int j = i - 1;
+			while (j >= low && utilities.get(j) < utility) {
+				utilities.put(j + 1, utilities.get(j));
+				codes.put(j + 1, codes.get(j));
+				j--;
+			}
+			utilities.put(j + 1, utility);
+			codes.put(j + 1, code);
+		}
+	}
+
+	private static void swap(DoubleBuffer utilities, LongBuffer codes, int a, int b) {
+		double utility = utilities.get(a);
+		utilities.put(a, utilities.get(b));
+		utilities.put(b, utility);
+		long code = codes.get(a);
+		codes.put(a, codes.get(b));
+		codes.put(b, code);
+	}
+}
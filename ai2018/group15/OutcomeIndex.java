@@ -0,0 +1,23 @@
+package ai2018.group15;
+
+/**
+ * Outcome space that can be queried for the bids within a utility range.
+ */
+public interface OutcomeIndex {
+
+	public BidCodec getCodec();
+
+	public double getMaxUtility();
+
+	public double getMinUtility();
+
+	/***
+	 * Sets a window to the bids with a utility in a range, including the bounds,
+	 * from high to low utility
+	 * 
+	 * @param lower  lower bound of the utility
+	 * @param upper  upper bound of the utility
+	 * @param window window to set
+	 */
+	public void query(double lower, double upper, BidWindow window);
+}
@@ -0,0 +1,481 @@
+package ai2018.group15;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import genius.core.Bid;
+import genius.core.boaframework.NegotiationSession;
+import genius.core.issue.IssueDiscrete;
+import genius.core.utility.AdditiveUtilitySpace;
+import genius.core.utility.EvaluatorDiscrete;
+
+/**
+ * Stores the outcome index and the estimated utility tables of a profile in a
+ * compact binary file, so later sessions on the same profile do not have to
+ * estimate, enumerate and sort the outcome space again. Files are keyed by a
+ * hash of the domain and the preference profile, so a profile that changes
+ * gets a new file. A file is only used if its header matches the profile. The
+ * last estimated bid ranking of a domain is stored as well, so the estimate of
+ * a changed ranking only has to apply the changes.
+ *
+ * The total size of the files in the directory is limited. When a file is
+ * written, the files that were used least recently are deleted until it fits,
+ * and a file that is larger than the limit by itself is not written at all.
+ */
+public class OutcomeIndexStore {
+	// Marks the start of a file
+	private static final int MAGIC = 0x47313549;
+	// Version of the file format
+	private static final int VERSION = 1;
+	// Largest total size of the files in the directory, set in megabytes by the
+	// property group15.cache.size
+	private static final long DEFAULT_MAX_SIZE = Long.getLong("group15.cache.size", 1024) << 20;
+	// Temporary files older than this were left by a session that did not finish
+	private static final long TEMP_FILE_AGE = 60 * 60 * 1000;
+
+	private File directory;
+	private long maxSize;
+
+	public OutcomeIndexStore(File directory) {
+		this(directory, DEFAULT_MAX_SIZE);
+	}
+
+	/***
+	 * @param directory directory of the stored profiles
+	 * @param maxSize   largest total size of the files in the directory, in bytes
+	 */
+	public OutcomeIndexStore(File directory, long maxSize) {
+		this.directory = directory;
+		this.maxSize = maxSize;
+	}
+
+	/***
+	 * Returns the directory set by the property group15.cache.dir, or a directory
+	 * in the temporary directory if it is not set
+	 * 
+	 * @return directory of the stored profiles
+	 */
+	public static File getDefaultDirectory() {
+		String directory = System.getProperty("group15.cache.dir");
+		if (directory != null) {
+			return new File(directory);
+		}
+		return new File(System.getProperty("java.io.tmpdir"), "group15");
+	}
+
+	/**
+	 * Profile data which was read from a file. The index or the tables may be null
+	 * if they were not stored.
+	 */
+	public static class StoredProfile {
+		private UtilityTables tables;
+		private UtilityIndex index;
+
+		StoredProfile(UtilityTables tables, UtilityIndex index) {
+			this.tables = tables;
+			this.index = index;
+		}
+
+		public UtilityTables getTables() {
+			return tables;
+		}
+
+		public UtilityIndex getIndex() {
+			return index;
+		}
+	}
+
+	/***
+	 * Computes a hash of the domain and of the preference profile: the bid ranking
+	 * under preference uncertainty, otherwise the weights and evaluations of the
+	 * utility space.
+	 * 
+	 * @param negotiationSession state of the negotiation
+	 * @param codec              codec of the domain
+	 * @return hash of the profile
+	 */
+	public long profileHash(NegotiationSession negotiationSession, BidCodec codec) {
+		long hash = domainHash(codec);
+
+		if (negotiationSession.getUserModel() != null) {
+			List<Bid> bidOrder = negotiationSession.getUserModel().getBidRanking().getBidOrder();
+			int[] indices = new int[codec.getIssueCount()];
+			hash = hash(hash, 'R');
+			hash = hash(hash, bidOrder.size());
+			for (Bid bid : bidOrder) {
+				codec.toIndices(bid, indices);
+				for (int index : indices) {
+					hash = hash(hash, index);
+				}
+			}
+		} else {
+			AdditiveUtilitySpace utilitySpace = (AdditiveUtilitySpace) negotiationSession.getUtilitySpace();
+			hash = hash(hash, 'U');
+			for (int i = 0; i < codec.getIssueCount(); i++) {
+				int issueNumber = codec.getIssue(i).getNumber();
+				EvaluatorDiscrete evaluator = (EvaluatorDiscrete) utilitySpace.getEvaluator(issueNumber);
+				hash = hash(hash, Double.doubleToLongBits(utilitySpace.getWeight(issueNumber)));
+				for (int v = 0; v < codec.getValueCount(i); v++) {
+					try {
+						hash = hash(hash, Double.doubleToLongBits(evaluator.getEvaluation(codec.getValue(i, v))));
+					} catch (Exception e) {
+						e.printStackTrace();
+					}
+				}
+			}
+		}
+		return hash;
+	}
+
+	/***
+	 * Reads the ranking that was estimated last on a domain
+	 * 
+	 * @param codec codec of the domain
+	 * @return estimate of the ranking, or null if there is no valid file for the
+	 *         domain
+	 */
+	public IncrementalEstimate loadRanking(BidCodec codec) {
+		long domainHash = domainHash(codec);
+		File file = getRankingFile(domainHash);
+		if (!file.isFile()) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			int issueCount = codec.getIssueCount();
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != domainHash
+					|| in.readInt() != issueCount) {
+				return null;
+			}
+			int size = in.readInt();
+			if (size < 0 || (long) size * issueCount * 4 > file.length()) {
+				return null;
+			}
+			int[][] ranking = new int[size][];
+			for (int r = 0; r < size; r++) {
+				ranking[r] = new int[issueCount];
+				for (int i = 0; i < issueCount; i++) {
+					ranking[r][i] = in.readInt();
+					if (ranking[r][i] < 0 || ranking[r][i] >= codec.getValueCount(i)) {
+						return null;
+					}
+				}
+			}
+			file.setLastModified(System.currentTimeMillis());
+			return new IncrementalEstimate(codec, ranking);
+		} catch (IOException e) { // invalid file, the ranking is estimated again
+			return null;
+		}
+	}
+
+	/***
+	 * Writes the ranking that was estimated, so a later session on the domain only
+	 * has to apply the changes of its ranking. The file is written next to its
+	 * destination and then moved, like the other profile data.
+	 * 
+	 * @param codec    codec of the domain
+	 * @param bidOrder ranked bids, from the worst to the best bid
+	 */
+	public void saveRanking(BidCodec codec, List<Bid> bidOrder) {
+		long domainHash = domainHash(codec);
+		try {
+			directory.mkdirs();
+			File temp = File.createTempFile("ranking", ".tmp", directory);
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(domainHash);
+				out.writeInt(codec.getIssueCount());
+				out.writeInt(bidOrder.size());
+				int[] indices = new int[codec.getIssueCount()];
+				for (Bid bid : bidOrder) {
+					for (int index : codec.toIndices(bid, indices)) {
+						out.writeInt(index);
+					}
+				}
+			}
+			Files.move(temp.toPath(), getRankingFile(domainHash).toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			evict(0);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/***
+	 * Computes a hash of the issues and values of the domain
+	 * 
+	 * @param codec codec of the domain
+	 * @return hash of the domain
+	 */
+	private long domainHash(BidCodec codec) {
+		long hash = 0xcbf29ce484222325L;
+		hash = hash(hash, codec.getIssueCount());
+		for (int i = 0; i < codec.getIssueCount(); i++) {
+			IssueDiscrete issue = codec.getIssue(i);
+			hash = hash(hash, issue.getNumber());
+			hash = hash(hash, issue.getName());
+			hash = hash(hash, codec.getValueCount(i));
+			for (int v = 0; v < codec.getValueCount(i); v++) {
+				hash = hash(hash, codec.getValue(i, v).getValue());
+			}
+		}
+		return hash;
+	}
+
+	/***
+	 * Reads the stored data of a profile. The outcome index is only used if its
+	 * utilities are sorted from high to low and its codes are every outcome of the
+	 * domain once, so a damaged file is computed again instead of used.
+	 * 
+	 * @param profileHash hash of the profile
+	 * @param codec       codec of the domain
+	 * @return stored data, or null if there is no valid file for the profile
+	 */
+	public StoredProfile load(long profileHash, BidCodec codec) {
+		File file = getFile(profileHash);
+		if (!file.isFile()) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != profileHash
+					|| in.readInt() != codec.getIssueCount()) {
+				return null;
+			}
+
+			UtilityTables tables = null;
+			if (in.readBoolean()) {
+				double[] weights = new double[codec.getIssueCount()];
+				double[][] valueUtilities = new double[codec.getIssueCount()][];
+				for (int i = 0; i < weights.length; i++) {
+					weights[i] = in.readDouble();
+					if (in.readInt() != codec.getValueCount(i)) {
+						return null;
+					}
+					valueUtilities[i] = new double[codec.getValueCount(i)];
+					for (int v = 0; v < valueUtilities[i].length; v++) {
+						valueUtilities[i][v] = in.readDouble();
+					}
+				}
+				tables = new UtilityTables(weights, valueUtilities);
+			}
+
+			UtilityIndex index = null;
+			if (in.readBoolean()) {
+				int size = in.readInt();
+				if (size != codec.getNumberOfBids()) {
+					return null;
+				}
+				double[] utilities = new double[size];
+				long[] codes = new long[size];
+				for (int i = 0; i < size; i++) {
+					utilities[i] = in.readDouble();
+					// Also rejects NaN
+					if (i > 0 && !(utilities[i] <= utilities[i - 1])) {
+						return null;
+					}
+				}
+				BitSet seen = new BitSet(size);
+				for (int i = 0; i < size; i++) {
+					codes[i] = in.readLong();
+					if (codes[i] < 0 || codes[i] >= size || seen.get((int) codes[i])) {
+						return null;
+					}
+					seen.set((int) codes[i]);
+				}
+				index = new UtilityIndex(codec, utilities, codes);
+			}
+			file.setLastModified(System.currentTimeMillis());
+			return new StoredProfile(tables, index);
+		} catch (IOException e) { // invalid file, the profile is computed again
+			return null;
+		}
+	}
+
+	/***
+	 * Writes the data of a profile. The file is written next to its destination
+	 * and then moved, so other sessions never read a partially written file.
+	 * 
+	 * @param profileHash hash of the profile
+	 * @param codec       codec of the domain
+	 * @param tables      estimated utility tables, or null
+	 * @param index       outcome index, or null
+	 */
+	public void save(long profileHash, BidCodec codec, UtilityTables tables, UtilityIndex index) {
+		try {
+			directory.mkdirs();
+			File temp = File.createTempFile("profile", ".tmp", directory);
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(profileHash);
+				out.writeInt(codec.getIssueCount());
+
+				out.writeBoolean(tables != null);
+				if (tables != null) {
+					for (int i = 0; i < codec.getIssueCount(); i++) {
+						out.writeDouble(tables.getWeights()[i]);
+						out.writeInt(tables.getValueUtilities()[i].length);
+						for (double utility : tables.getValueUtilities()[i]) {
+							out.writeDouble(utility);
+						}
+					}
+				}
+
+				out.writeBoolean(index != null);
+				if (index != null) {
+					out.writeInt(index.size());
+					for (double utility : index.getUtilities()) {
+						out.writeDouble(utility);
+					}
+					for (long code : index.getCodes()) {
+						out.writeLong(code);
+					}
+				}
+			}
+			Files.move(temp.toPath(), getFile(profileHash).toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			evict(0);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/***
+	 * Maps the outcome index of a profile from its file, the file is built first
+	 * if the profile was not seen before. The file is written next to its
+	 * destination and then moved, like the other profile data. Older files are
+	 * deleted first if the file does not fit within the size limit.
+	 * 
+	 * @param profileHash  hash of the profile
+	 * @param codec        codec of the domain
+	 * @param utilitySpace utility space of the profile
+	 * @return mapped outcome index, or null if it could not be built or is larger
+	 *         than the size limit
+	 */
+	public MappedOutcomeIndex openMapped(long profileHash, BidCodec codec, AdditiveUtilitySpace utilitySpace) {
+		File file = getMappedFile(profileHash);
+		try {
+			MappedOutcomeIndex index = MappedOutcomeIndex.open(file, profileHash, codec);
+			if (index != null) {
+				file.setLastModified(System.currentTimeMillis());
+			} else {
+				if (!evict(MappedOutcomeIndex.getFileSize(codec))) {
+					return null;
+				}
+				directory.mkdirs();
+				File temp = File.createTempFile("profile", ".tmp", directory);
+				try {
+					MappedOutcomeIndex.build(temp, profileHash, codec, utilitySpace);
+					Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+							StandardCopyOption.ATOMIC_MOVE);
+				} finally {
+					temp.delete();
+				}
+				index = MappedOutcomeIndex.open(file, profileHash, codec);
+			}
+			return index;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/***
+	 * Deletes the files of the directory that were used least recently until a
+	 * new file fits within the size limit, together with the temporary files that
+	 * were left by sessions that did not finish. A file that is still mapped by
+	 * another session can not be deleted on every platform, and then stays.
+	 * 
+	 * @param size size of the new file in bytes, 0 if it was already written
+	 * @return whether the new file fits within the size limit
+	 */
+	private boolean evict(long size) {
+		if (size > maxSize) {
+			return false;
+		}
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return true;
+		}
+		long now = System.currentTimeMillis();
+		long total = size;
+		List<File> stored = new ArrayList<File>();
+		// Time every file was last used, read once so it does not change while sorting
+		final Map<File, Long> lastUsed = new HashMap<File, Long>();
+		for (File file : files) {
+			String name = file.getName();
+			if (name.endsWith(".tmp")) {
+				if (now - file.lastModified() > TEMP_FILE_AGE) {
+					file.delete();
+				}
+			} else if (name.startsWith("profile-") || name.startsWith("ranking-")) {
+				stored.add(file);
+				lastUsed.put(file, file.lastModified());
+				total += file.length();
+			}
+		}
+		if (total <= maxSize) {
+			return true;
+		}
+
+		Collections.sort(stored, new Comparator<File>() {
+			@Override
+			public int compare(File a, File b) {
+				return Long.compare(lastUsed.get(a), lastUsed.get(b));
+			}
+		});
+		for (int i = 0; i < stored.size() && total > maxSize; i++) {
+			long length = stored.get(i).length();
+			if (stored.get(i).delete()) {
+				total -= length;
+			}
+		}
+		return total <= maxSize;
+	}
+
+	private File getFile(long profileHash) {
+		return new File(directory, String.format("profile-%016x.bin", profileHash));
+	}
+
+	private File getMappedFile(long profileHash) {
+		return new File(directory, String.format("profile-%016x.idx", profileHash));
+	}
+
+	private File getRankingFile(long domainHash) {
+		return new File(directory, String.format("ranking-%016x.bin", domainHash));
+	}
+
+	// FNV-1a hash of a long, one byte at a time
+	private static long hash(long hash, long value) {
+		for (int i = 0; i < 8; i++) {
+			hash ^= (value >>> (8 * i)) & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	private static long hash(long hash, String value) {
+		hash = hash(hash, value.length());
+		for (int i = 0; i < value.length(); i++) {
+			hash = hash(hash, value.charAt(i));
+		}
+		return hash;
+	}
+}
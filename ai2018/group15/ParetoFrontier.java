@@ -0,0 +1,152 @@
+package ai2018.group15;
+
+/**
+ * Pareto frontier of the outcome space, over our utility and the utility of the
+ * opponent according to the opponent model. The outcomes of a sorted outcome
+ * index are already ordered from high to low own utility, so an outcome is on
+ * the frontier if it is better for the opponent than every outcome before it,
+ * and the frontier is a staircase along which the opponent utility rises. The
+ * bids on the frontier within a utility range are found with a binary search.
+ *
+ * The staircase is built lazily: the outcomes are only scanned down to the
+ * lowest utility that was asked for, which follows the target utility of the
+ * agent as it concedes. When the opponent model changes, the evaluation of every
+ * outcome may change, so the scan starts again at the best outcome with the
+ * next request. The frontier is therefore always the frontier of the whole
+ * outcome space for the current model, down to the utility that was asked for.
+ */
+public class ParetoFrontier {
+	private SortedOutcomeIndex index;
+	private Group15_OM model;
+	// Generation of the opponent model with which the outcomes were scanned
+	private int generation = -1;
+	// Number of outcomes of the index that were scanned
+	private int scanned;
+
+	private int size;
+	// Position in the index of the bids on the frontier, from high to low own
+	// utility
+	private int[] positions = new int[16];
+	// Opponent utility of the bids, from low to high
+	private double[] opponentUtilities = new double[16];
+	// Value indices of the outcome that is scanned
+	private int[] indices;
+
+	public ParetoFrontier(SortedOutcomeIndex index, Group15_OM model) {
+		this.index = index;
+		this.model = model;
+		indices = new int[index.getCodec().getIssueCount()];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public double getUtility(int i) {
+		return index.getUtility(positions[i]);
+	}
+
+	public double getOpponentUtility(int i) {
+		return opponentUtilities[i];
+	}
+
+	public long getCode(int i) {
+		return index.getCode(positions[i]);
+	}
+
+	/***
+	 * Returns the position of a bid on the frontier in the outcome index
+	 *
+	 * @param i index of the bid on the frontier
+	 * @return position of the bid in the outcome index
+	 */
+	public int getPosition(int i) {
+		return positions[i];
+	}
+
+	/***
+	 * Makes the frontier hold every bid on the frontier with an own utility of at
+	 * least a utility, for the current opponent model
+	 *
+	 * @param lower lowest own utility
+	 */
+	public void scanTo(double lower) {
+		int currentGeneration = model.getGeneration();
+		if (generation != currentGeneration) {
+			generation = currentGeneration;
+			scanned = 0;
+			size = 0;
+		}
+		int end = index.indexBelow(lower);
+		for (; scanned < end; scanned++) {
+			double opponentUtility = model.getBidEvaluation(index.getCodec().toIndices(index.getCode(scanned), indices));
+			// Every bid before it is at least as good for us
+			if (size > 0 && opponentUtility <= opponentUtilities[size - 1]) {
+				continue;
+			}
+			// A bid with the same own utility as the last bid on the frontier is better for
+			// the opponent, so it replaces it
+			if (size > 0 && index.getUtility(positions[size - 1]) == index.getUtility(scanned)) {
+				size--;
+			}
+			if (size == positions.length) {
+				grow();
+			}
+			positions[size] = scanned;
+			opponentUtilities[size] = opponentUtility;
+			size++;
+		}
+	}
+
+	/***
+	 * Returns the first bid on the frontier with an own utility lower than or
+	 * equal to a utility
+	 *
+	 * @param utility upper bound of the utility
+	 * @return index of the bid, or the size of the frontier if there is none
+	 */
+	public int indexAtOrBelow(double utility) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (getUtility(mid) <= utility) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	/***
+	 * Returns the first bid on the frontier with an own utility lower than a
+	 * utility
+	 *
+	 * @param utility lower bound of the utility
+	 * @return index of the bid, or the size of the frontier if there is none
+	 */
+	public int indexBelow(double utility) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (getUtility(mid) < utility) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	private void grow() {
+		int capacity = positions.length * 2;
+		int[] newPositions = new int[capacity];
+		double[] newOpponentUtilities = new double[capacity];
+		System.arraycopy(positions, 0, newPositions, 0, size);
+		System.arraycopy(opponentUtilities, 0, newOpponentUtilities, 0, size);
+		positions = newPositions;
+		opponentUtilities = newOpponentUtilities;
+	}
+}
@@ -0,0 +1,138 @@
+package ai2018.group15;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Emits a Java Flight Recorder event for every round of the agent, with the
+ * round number, the size of the bid window, the generation of the opponent
+ * model and the latency of the round. The event type is created with the
+ * EventFactory of jdk.jfr through reflection, so the agent still compiles for
+ * Java 8 and runs on JVMs without JFR. The methods of the event class are
+ * looked up once as method handles, so emitting an event costs about as much
+ * as calling them directly. The values are only boxed if the event is
+ * recorded. Events are only emitted if the metrics are enabled and the jdk.jfr
+ * classes are present, and no more events are emitted after one fails.
+ */
+public class RoundEvents {
+	// Name of the event type in a recording
+	public static final String EVENT_NAME = "ai2018.group15.Round";
+
+	// Factory of the events, null if no events are emitted
+	private static Object factory;
+	// Methods of the event factory and of the event class, with Object in place of
+	// the jdk.jfr types, null if no events are emitted
+	private static final MethodHandle NEW_EVENT;
+	private static final MethodHandle SHOULD_COMMIT;
+	private static final MethodHandle SET;
+	private static final MethodHandle COMMIT;
+
+	static {
+		MethodHandle[] handles = new MethodHandle[4];
+		if (ComponentMetrics.ENABLED && isJfrPresent()) {
+			try {
+				factory = createFactory(handles);
+			} catch (Exception e) {
+				factory = null;
+				e.printStackTrace();
+			}
+		}
+		NEW_EVENT = handles[0];
+		SHOULD_COMMIT = handles[1];
+		SET = handles[2];
+		COMMIT = handles[3];
+	}
+
+	private static boolean isJfrPresent() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return true;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	/***
+	 * Defines the event type, which is registered with the flight recorder when
+	 * it is created, and looks up the methods to create and commit an event
+	 *
+	 * @param handles receives the methods newEvent, shouldCommit, set and commit
+	 * @return factory of the events
+	 */
+	private static Object createFactory(MethodHandle[] handles) throws Exception {
+		Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+		Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+		Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+		Class<?> event = Class.forName("jdk.jfr.Event");
+		Class<?> label = Class.forName("jdk.jfr.Label");
+		Constructor<?> annotation = annotationElement.getConstructor(Class.class, Object.class);
+		Constructor<?> field = valueDescriptor.getConstructor(Class.class, String.class, List.class);
+
+		List<Object> annotations = new ArrayList<Object>();
+		annotations.add(annotation.newInstance(Class.forName("jdk.jfr.Name"), EVENT_NAME));
+		annotations.add(annotation.newInstance(label, "Round"));
+		annotations.add(annotation.newInstance(Class.forName("jdk.jfr.Category"), new String[] { "Group 15" }));
+		// The stack trace is always the bidding strategy
+		annotations.add(annotation.newInstance(Class.forName("jdk.jfr.StackTrace"), false));
+
+		// The values of an event are set by their position in this list
+		List<Object> fields = new ArrayList<Object>();
+		fields.add(field.newInstance(int.class, "round",
+				Collections.singletonList(annotation.newInstance(label, "Round"))));
+		fields.add(field.newInstance(int.class, "windowSize",
+				Collections.singletonList(annotation.newInstance(label, "Window Size"))));
+		fields.add(field.newInstance(int.class, "modelGeneration",
+				Collections.singletonList(annotation.newInstance(label, "Model Generation"))));
+		fields.add(field.newInstance(long.class, "latency",
+				Arrays.asList(annotation.newInstance(label, "Latency"),
+						annotation.newInstance(Class.forName("jdk.jfr.Timespan"), "NANOSECONDS"))));
+
+		Object created = eventFactory.getMethod("create", List.class, List.class).invoke(null, annotations, fields);
+		MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+		handles[0] = lookup.findVirtual(eventFactory, "newEvent", MethodType.methodType(event))
+				.asType(MethodType.methodType(Object.class, Object.class));
+		handles[1] = lookup.findVirtual(event, "shouldCommit", MethodType.methodType(boolean.class))
+				.asType(MethodType.methodType(boolean.class, Object.class));
+		handles[2] = lookup.findVirtual(event, "set", MethodType.methodType(void.class, int.class, Object.class))
+				.asType(MethodType.methodType(void.class, Object.class, int.class, Object.class));
+		handles[3] = lookup.findVirtual(event, "commit", MethodType.methodType(void.class))
+				.asType(MethodType.methodType(void.class, Object.class));
+		return created;
+	}
+
+	/***
+	 * Emits the event of a round, if the flight recorder records it
+	 *
+	 * @param round           number of the round
+	 * @param windowSize      number of bids in the window of the round, 0 if no
+	 *                        window was scored
+	 * @param modelGeneration generation of the opponent model
+	 * @param latency         latency of the round in nanoseconds
+	 */
+	public static void emit(int round, int windowSize, int modelGeneration, long latency) {
+		Object eventFactory = factory;
+		if (eventFactory == null) {
+			return;
+		}
+		try {
+			Object event = (Object) NEW_EVENT.invokeExact(eventFactory);
+			if ((boolean) SHOULD_COMMIT.invokeExact(event)) {
+				SET.invokeExact(event, 0, (Object) round);
+				SET.invokeExact(event, 1, (Object) windowSize);
+				SET.invokeExact(event, 2, (Object) modelGeneration);
+				SET.invokeExact(event, 3, (Object) latency);
+				COMMIT.invokeExact(event);
+			}
+		} catch (Throwable e) {
+			// A failure would repeat every round, so no more events are emitted
+			factory = null;
+			e.printStackTrace();
+		}
+	}
+}
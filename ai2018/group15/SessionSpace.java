@@ -0,0 +1,145 @@
+package ai2018.group15;
+
+import java.util.List;
+
+import genius.core.Bid;
+import genius.core.boaframework.NegotiationSession;
+import genius.core.boaframework.SortedOutcomeSpace;
+import genius.core.utility.AbstractUtilitySpace;
+import genius.core.utility.AdditiveUtilitySpace;
+
+/**
+ * The outcome space of a session, shared by all components of the agent. The
+ * utility space (estimated when the negotiation is done under preference
+ * uncertainty), the bid codec and the outcome index are computed once, when the
+ * session space is created. If a store is given, they are loaded from the store
+ * when the profile was seen before and saved to it otherwise, and a changed bid
+ * ranking is estimated from the last ranking of the domain. Outcome spaces
+ * too large to enumerate are generated on demand, or mapped from a file of the
+ * store if the property group15.mapped is set.
+ */
+public class SessionSpace {
+	private AbstractUtilitySpace utilitySpace;
+	private BidCodec codec;
+	private OutcomeIndex outcomeIndex;
+	// Latencies of the components during the session
+	private ComponentMetrics metrics = new ComponentMetrics();
+	// Time left in the session, measured in rounds
+	private DeadlineController deadline;
+	// Statistics of the bids of the opponent
+	private HistoryIndex history;
+
+	public SessionSpace(NegotiationSession negotiationSession) {
+		this(negotiationSession, LazyOutcomeSpace.DEFAULT_MAX_OUTCOMES);
+	}
+
+	/***
+	 * Computes the outcome space of a session
+	 * 
+	 * @param negotiationSession state of the negotiation
+	 * @param maxOutcomes        maximum number of outcomes to enumerate, the bids
+	 *                           of larger domains are generated on demand
+	 */
+	public SessionSpace(NegotiationSession negotiationSession, long maxOutcomes) {
+		this(negotiationSession, maxOutcomes, null);
+	}
+
+	/***
+	 * Computes the outcome space of a session, or loads it from a store
+	 * 
+	 * @param negotiationSession state of the negotiation
+	 * @param maxOutcomes        maximum number of outcomes to enumerate, the bids
+	 *                           of larger domains are generated on demand
+	 * @param store              store of previously computed profiles, or null
+	 */
+	public SessionSpace(NegotiationSession negotiationSession, long maxOutcomes, OutcomeIndexStore store) {
+		codec = new BidCodec(negotiationSession.getDomain());
+		deadline = new DeadlineController(negotiationSession);
+		history = new HistoryIndex(negotiationSession);
+
+		long profileHash = 0;
+		OutcomeIndexStore.StoredProfile stored = null;
+		if (store != null) {
+			profileHash = store.profileHash(negotiationSession, codec);
+			stored = store.load(profileHash, codec);
+		}
+		boolean computed = false;
+
+		UtilityTables tables = null;
+		if (negotiationSession.getUserModel() != null) {
+			if (stored != null && stored.getTables() != null) {
+				tables = stored.getTables();
+			} else {
+				long start = ComponentMetrics.start();
+				List<Bid> bidOrder = negotiationSession.getUserModel().getBidRanking().getBidOrder();
+				// The estimate of the last ranking on the domain only has to apply the changes
+				// of this ranking, a ranking of a new domain is estimated at once
+				IncrementalEstimate estimate = store != null ? store.loadRanking(codec) : null;
+				if (estimate != null) {
+					estimate.update(bidOrder);
+					tables = estimate.getUtilityTables();
+				} else {
+					tables = new EstimateUtility(negotiationSession, codec).getUtilityTables();
+				}
+				metrics.record(ComponentMetrics.ESTIMATE_UTILITY, start);
+				computed = true;
+				if (store != null) {
+					store.saveRanking(codec, bidOrder);
+				}
+			}
+			utilitySpace = tables.toUtilitySpace(codec);
+		} else {
+			utilitySpace = negotiationSession.getUtilitySpace();
+		}
+
+		long start = ComponentMetrics.start();
+		UtilityIndex utilityIndex = null;
+		if (LazyOutcomeSpace.isEnumerable(codec, maxOutcomes)) {
+			if (stored != null && stored.getIndex() != null) {
+				// The outcome space of the session is not set, the components read the outcome
+				// index instead, so the bids are not created
+				utilityIndex = stored.getIndex();
+			} else {
+				SortedOutcomeSpace outcomeSpace = new SortedOutcomeSpace(utilitySpace);
+				negotiationSession.setOutcomeSpace(outcomeSpace);
+				utilityIndex = new UtilityIndex(outcomeSpace, codec);
+				computed = true;
+			}
+			outcomeIndex = utilityIndex;
+		} else if (store != null && MappedOutcomeIndex.ENABLED && MappedOutcomeIndex.isMappable(codec)) {
+			outcomeIndex = store.openMapped(profileHash, codec, (AdditiveUtilitySpace) utilitySpace);
+		}
+		if (outcomeIndex == null) {
+			outcomeIndex = new LazyOutcomeSpace((AdditiveUtilitySpace) utilitySpace, codec);
+		}
+		metrics.record(ComponentMetrics.OUTCOME_SPACE, start);
+
+		if (store != null && computed) {
+			store.save(profileHash, codec, tables, utilityIndex);
+		}
+	}
+
+	public AbstractUtilitySpace getUtilitySpace() {
+		return utilitySpace;
+	}
+
+	public BidCodec getCodec() {
+		return codec;
+	}
+
+	public OutcomeIndex getOutcomeIndex() {
+		return outcomeIndex;
+	}
+
+	public ComponentMetrics getMetrics() {
+		return metrics;
+	}
+
+	public DeadlineController getDeadline() {
+		return deadline;
+	}
+
+	public HistoryIndex getHistory() {
+		return history;
+	}
+}
@@ -0,0 +1,303 @@
+package ai2018.group15;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import genius.core.AgentID;
+import genius.core.Bid;
+import genius.core.timeline.TimeLineInfo;
+import genius.core.timeline.Timeline;
+
+/**
+ * Compact binary trace of a session, so a session can be replayed offline
+ * against the same workload. The trace holds the random seed of the agent, the
+ * type and total time of the timeline, the shape of the domain and, in the
+ * order they happened, the bids of the opponents with the time they were
+ * received and the times at which the agent started and finished its turns, so
+ * the time the agent took is replayed as well. Bids are stored as the value
+ * indices of the bid codec, as a single code if the domain is packed.
+ *
+ * Traces are only recorded if the property group15.trace.dir is set to the
+ * directory to write them to.
+ */
+public class SessionTrace {
+	// Marks the start of a file
+	private static final int MAGIC = 0x47313554;
+	// Version of the file format, version 1 traces only have the start of a turn
+	private static final int VERSION = 2;
+	// Event types
+	public static final byte BID = 1;
+	public static final byte TURN = 2;
+
+	private DataOutputStream out;
+	private BidCodec codec;
+	private int[] indices;
+	// Number of every opponent, in the order of their first bid
+	private Map<AgentID, Integer> opponents = new HashMap<AgentID, Integer>();
+
+	private SessionTrace(DataOutputStream out, BidCodec codec) {
+		this.out = out;
+		this.codec = codec;
+		indices = new int[codec.getIssueCount()];
+	}
+
+	/***
+	 * Returns the directory set by the property group15.trace.dir
+	 *
+	 * @return directory of the traces, or null if traces are not recorded
+	 */
+	public static File getDirectory() {
+		String directory = System.getProperty("group15.trace.dir");
+		return directory == null ? null : new File(directory);
+	}
+
+	/***
+	 * Starts the trace of a session in a new file of a directory
+	 *
+	 * @param directory directory of the traces
+	 * @param seed      random seed of the agent
+	 * @param timeline  timeline of the session
+	 * @param codec     codec of the domain
+	 * @return trace of the session
+	 * @throws IOException if the file can not be written
+	 */
+	public static SessionTrace create(File directory, long seed, TimeLineInfo timeline, BidCodec codec)
+			throws IOException {
+		directory.mkdirs();
+		File file = new File(directory, String.format("session-%d-%016x.trace", System.currentTimeMillis(), seed));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(seed);
+		out.writeBoolean(timeline.getType() == Timeline.Type.Rounds);
+		out.writeDouble(timeline.getTotalTime());
+		out.writeInt(codec.getIssueCount());
+		for (int i = 0; i < codec.getIssueCount(); i++) {
+			out.writeInt(codec.getValueCount(i));
+		}
+		return new SessionTrace(out, codec);
+	}
+
+	/***
+	 * Records a bid of an opponent
+	 *
+	 * @param time   normalized time at which the bid was received
+	 * @param sender sender of the bid, or null if it is not known
+	 * @param bid    bid of the opponent
+	 */
+	public void recordBid(double time, AgentID sender, Bid bid) {
+		try {
+			Integer opponent = 0;
+			if (sender != null) {
+				opponent = opponents.get(sender);
+				if (opponent == null) {
+					opponent = opponents.size() + 1;
+					opponents.put(sender, opponent);
+				}
+			}
+			out.writeByte(BID);
+			out.writeDouble(time);
+			out.writeShort(opponent);
+			if (codec.isPacked()) {
+				out.writeLong(codec.encode(bid));
+			} else {
+				codec.toIndices(bid, indices);
+				for (int index : indices) {
+					out.writeInt(index);
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/***
+	 * Records a turn of the agent
+	 *
+	 * @param start normalized time at which the agent had to act
+	 * @param end   normalized time at which the agent acted
+	 */
+	public void recordTurn(double start, double end) {
+		try {
+			out.writeByte(TURN);
+			out.writeDouble(start);
+			out.writeDouble(end);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	public void close() {
+		try {
+			out.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Session which was read from a trace. Event i happened at getTime(i), turns
+	 * ended at getEndTime(i), bid events have an opponent number (0 if the sender
+	 * was not known) and a bid.
+	 */
+	public static class Recording {
+		private long seed;
+		private boolean rounds;
+		private double totalTime;
+		private int[] valueCounts;
+		private List<Byte> types = new ArrayList<Byte>();
+		private List<Double> times = new ArrayList<Double>();
+		private List<Double> endTimes = new ArrayList<Double>();
+		private List<Integer> opponents = new ArrayList<Integer>();
+		// Value indices of the bid of every event, null for turns
+		private List<int[]> bids = new ArrayList<int[]>();
+
+		public long getSeed() {
+			return seed;
+		}
+
+		public boolean isRounds() {
+			return rounds;
+		}
+
+		public double getTotalTime() {
+			return totalTime;
+		}
+
+		public int size() {
+			return types.size();
+		}
+
+		public byte getType(int event) {
+			return types.get(event);
+		}
+
+		public double getTime(int event) {
+			return times.get(event);
+		}
+
+		/***
+		 * Returns the time at which an event ended
+		 *
+		 * @param event index of the event
+		 * @return end time of a turn, the time of the event for bids and for turns of
+		 *         version 1 traces
+		 */
+		public double getEndTime(int event) {
+			return endTimes.get(event);
+		}
+
+		public int getOpponent(int event) {
+			return opponents.get(event);
+		}
+
+		/***
+		 * Returns the bid of an event
+		 *
+		 * @param event index of the event
+		 * @param codec codec of the domain of the trace
+		 * @return bid of the event, or null if it is a turn
+		 */
+		public Bid getBid(int event, BidCodec codec) {
+			int[] indices = bids.get(event);
+			return indices == null ? null : codec.toBid(indices);
+		}
+
+		/***
+		 * Checks whether a domain has the shape of the domain of the trace
+		 *
+		 * @param codec codec of the domain
+		 * @return whether the bids of the trace can be decoded
+		 */
+		public boolean matches(BidCodec codec) {
+			if (codec.getIssueCount() != valueCounts.length) {
+				return false;
+			}
+			for (int i = 0; i < valueCounts.length; i++) {
+				if (codec.getValueCount(i) != valueCounts[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/***
+	 * Reads a trace
+	 *
+	 * @param file  file of the trace
+	 * @param codec codec of the domain of the trace
+	 * @return recorded session
+	 * @throws IOException if the file is not a trace of the domain
+	 */
+	public static Recording read(File file, BidCodec codec) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a session trace: " + file);
+			}
+			int version = in.readInt();
+			if (version < 1 || version > VERSION) {
+				throw new IOException("Unsupported trace version " + version + ": " + file);
+			}
+			Recording recording = new Recording();
+			recording.seed = in.readLong();
+			recording.rounds = in.readBoolean();
+			recording.totalTime = in.readDouble();
+			recording.valueCounts = new int[in.readInt()];
+			for (int i = 0; i < recording.valueCounts.length; i++) {
+				recording.valueCounts[i] = in.readInt();
+			}
+			if (!recording.matches(codec)) {
+				throw new IOException("Trace was recorded on another domain: " + file);
+			}
+
+			// A trace of a session that did not end normally may be cut off within an
+			// event, such an event is skipped
+			try {
+				int type;
+				while ((type = in.read()) != -1) {
+					double time = in.readDouble();
+					double endTime = time;
+					int opponent = 0;
+					int[] indices = null;
+					if (type == BID) {
+						opponent = in.readUnsignedShort();
+						indices = new int[codec.getIssueCount()];
+						if (codec.isPacked()) {
+							codec.toIndices(in.readLong(), indices);
+						} else {
+							for (int i = 0; i < indices.length; i++) {
+								indices[i] = in.readInt();
+							}
+						}
+					} else if (type == TURN) {
+						if (version >= 2) {
+							endTime = in.readDouble();
+						}
+					} else {
+						throw new IOException("Unknown event in trace: " + type);
+					}
+					recording.types.add((byte) type);
+					recording.times.add(time);
+					recording.endTimes.add(endTime);
+					recording.opponents.add(opponent);
+					recording.bids.add(indices);
+				}
+			} catch (EOFException e) {
+				// cut off event
+			}
+			return recording;
+		}
+	}
+}
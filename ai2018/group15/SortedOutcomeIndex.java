@@ -0,0 +1,34 @@
+package ai2018.group15;
+
+import genius.core.bidding.BidDetails;
+
+/**
+ * Outcome index which holds all outcomes sorted from high to low utility, so
+ * every outcome has a position and a range query is a pair of positions.
+ */
+public interface SortedOutcomeIndex extends OutcomeIndex {
+
+	public int size();
+
+	public double getUtility(int index);
+
+	public long getCode(int index);
+
+	public BidDetails getBidDetails(int index);
+
+	/***
+	 * Returns the first outcome with a utility lower than or equal to a utility
+	 *
+	 * @param utility upper bound of the utility
+	 * @return index of the outcome, or the size of the index if there is none
+	 */
+	public int indexAtOrBelow(double utility);
+
+	/***
+	 * Returns the first outcome with a utility lower than a utility
+	 *
+	 * @param utility lower bound of the utility
+	 * @return index of the outcome, or the size of the index if there is none
+	 */
+	public int indexBelow(double utility);
+}
@@ -0,0 +1,133 @@
+package ai2018.group15;
+
+import java.util.List;
+
+import genius.core.bidding.BidDetails;
+import genius.core.boaframework.SortedOutcomeSpace;
+
+/**
+ * Index over a sorted outcome space which answers utility range queries with a
+ * binary search. The utilities are stored in a primitive array sorted from high
+ * to low, with parallel arrays of the bids and their codes. A range query fills
+ * a BidWindow with the offset and length of the bids in the range, so no lists
+ * are created. An index can also be created from stored utilities and codes,
+ * in which case the bids are only created when they are requested.
+ */
+public class UtilityIndex implements SortedOutcomeIndex {
+	private BidCodec codec;
+	// Utility of every outcome, sorted from high to low
+	private double[] utilities;
+	// Code of every outcome, same order as utilities
+	private long[] codes;
+	// Bid of every outcome, same order as utilities, created on request if null
+	private BidDetails[] bids;
+
+	public UtilityIndex(SortedOutcomeSpace outcomeSpace, BidCodec codec) {
+		this.codec = codec;
+		List<BidDetails> outcomes = outcomeSpace.getAllOutcomes();
+		utilities = new double[outcomes.size()];
+		codes = new long[outcomes.size()];
+		bids = outcomes.toArray(new BidDetails[0]);
+		for (int i = 0; i < bids.length; i++) {
+			utilities[i] = bids[i].getMyUndiscountedUtil();
+			codes[i] = codec.encode(bids[i].getBid());
+		}
+	}
+
+	/***
+	 * Creates an index from the utilities and codes of the outcomes
+	 * 
+	 * @param codec     codec of the domain
+	 * @param utilities utility of every outcome, sorted from high to low
+	 * @param codes     code of every outcome, same order as utilities
+	 */
+	public UtilityIndex(BidCodec codec, double[] utilities, long[] codes) {
+		this.codec = codec;
+		this.utilities = utilities;
+		this.codes = codes;
+		bids = new BidDetails[utilities.length];
+	}
+
+	@Override
+	public BidCodec getCodec() {
+		return codec;
+	}
+
+	@Override
+	public int size() {
+		return utilities.length;
+	}
+
+	@Override
+	public double getUtility(int index) {
+		return utilities[index];
+	}
+
+	@Override
+	public long getCode(int index) {
+		return codes[index];
+	}
+
+	@Override
+	public BidDetails getBidDetails(int index) {
+		if (bids[index] == null) {
+			bids[index] = new BidDetails(codec.toBid(codes[index]), utilities[index]);
+		}
+		return bids[index];
+	}
+
+	double[] getUtilities() {
+		return utilities;
+	}
+
+	long[] getCodes() {
+		return codes;
+	}
+
+	@Override
+	public double getMaxUtility() {
+		return utilities[0];
+	}
+
+	@Override
+	public double getMinUtility() {
+		return utilities[utilities.length - 1];
+	}
+
+	@Override
+	public int indexAtOrBelow(double utility) {
+		int low = 0;
+		int high = utilities.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (utilities[mid] <= utility) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	@Override
+	public int indexBelow(double utility) {
+		int low = 0;
+		int high = utilities.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (utilities[mid] < utility) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	@Override
+	public void query(double lower, double upper, BidWindow window) {
+		int start = indexAtOrBelow(upper);
+		int end = indexBelow(lower);
+		window.setRange(this, start, Math.max(0, end - start));
+	}
+}
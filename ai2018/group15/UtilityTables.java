@@ -0,0 +1,50 @@
+package ai2018.group15;
+
+import genius.core.uncertainty.AdditiveUtilitySpaceFactory;
+import genius.core.utility.AbstractUtilitySpace;
+
+/**
+ * Issue weights and value utilities of an additive utility space, indexed by
+ * issue and value index of a BidCodec. A value utility of 0 means the value was
+ * not set.
+ */
+public class UtilityTables {
+	// Weight of every issue
+	private double[] weights;
+	// Utility of every value, indexed by issue and value index
+	private double[][] valueUtilities;
+
+	public UtilityTables(double[] weights, double[][] valueUtilities) {
+		this.weights = weights;
+		this.valueUtilities = valueUtilities;
+	}
+
+	public double[] getWeights() {
+		return weights;
+	}
+
+	public double[][] getValueUtilities() {
+		return valueUtilities;
+	}
+
+	/***
+	 * Creates the utility space of the tables
+	 * 
+	 * @param codec codec of the domain
+	 * @return additive utility space with the weights and value utilities
+	 */
+	public AbstractUtilitySpace toUtilitySpace(BidCodec codec) {
+		AdditiveUtilitySpaceFactory factory = new AdditiveUtilitySpaceFactory(codec.getDomain());
+		for (int j = 0; j < valueUtilities.length; j++) {
+			for (int v = 0; v < valueUtilities[j].length; v++) {
+				if (valueUtilities[j][v] > 0) { // Only values that were set
+					factory.setUtility(codec.getIssue(j), codec.getValue(j, v), valueUtilities[j][v]);
+				}
+			}
+		}
+
+		factory.getUtilitySpace().setWeights(codec.getDomain().getIssues(), weights);
+
+		return factory.getUtilitySpace();
+	}
+}
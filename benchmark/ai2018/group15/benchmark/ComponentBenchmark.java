@@ -0,0 +1,246 @@
+package ai2018.group15.benchmark;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import ai2018.group15.BidCodec;
+import ai2018.group15.BidSelector;
+import ai2018.group15.BidWindow;
+import ai2018.group15.EstimateUtility;
+import ai2018.group15.Group15;
+import ai2018.group15.Group15_AS;
+import ai2018.group15.Group15_BS;
+import ai2018.group15.Group15_OM;
+import ai2018.group15.Group15_OMS;
+import ai2018.group15.IncrementalEstimate;
+import ai2018.group15.OutcomeIndex;
+import ai2018.group15.SessionSpace;
+import ai2018.group15.SyntheticDomain;
+import ai2018.group15.UtilityTables;
+import genius.core.Bid;
+import genius.core.bidding.BidDetails;
+import genius.core.boaframework.Actions;
+import genius.core.boaframework.NegotiationSession;
+import genius.core.uncertainty.UserModel;
+import genius.core.utility.AbstractUtilitySpace;
+import genius.core.utility.AdditiveUtilitySpace;
+
+/**
+ * JMH benchmarks of the time per call of the components of the agent on
+ * synthetic domains of increasing size. The size of a domain is given as the
+ * number of issues times the number of values per issue. The results of the
+ * calls are returned to JMH, so they can not be optimized away.
+ *
+ * Build the benchmarks with mvn -P benchmarks package and run them with
+ * java -cp target/benchmarks.jar:lib/genius.jar org.openjdk.jmh.Main
+ * ComponentBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ComponentBenchmark {
+	// Number of ranked bids of the user model
+	private static final int RANKED_BIDS = 1000;
+	// Number of opponent bids that are fed to the opponent model in turn
+	private static final int OPPONENT_BIDS = 1024;
+	// Number of rounds of the sessions
+	private static final int ROUNDS = 1000;
+	// Seed of the random utility spaces and bids
+	private static final long SEED = 15;
+
+	/***
+	 * Creates the synthetic domain of a benchmark parameter
+	 *
+	 * @param size number of issues and number of values per issue, as "6x7"
+	 * @return domain
+	 */
+	private static SyntheticDomain createDomain(String size) {
+		String[] parts = size.split("x");
+		return new SyntheticDomain(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+	}
+
+	@State(Scope.Thread)
+	public static class UpdateModelState {
+		@Param({ "3x4", "4x5", "5x6", "6x7", "7x8", "10x8" })
+		public String size;
+
+		SyntheticDomain domain;
+		Bid[] bids = new Bid[OPPONENT_BIDS];
+		double[] utilities = new double[OPPONENT_BIDS];
+		int next;
+		NegotiationSession session;
+		Group15_OM model;
+
+		@Setup(Level.Trial)
+		public void createBids() {
+			Random rng = new Random(SEED);
+			domain = createDomain(size);
+			AdditiveUtilitySpace utilitySpace = domain.createUtilitySpace(rng);
+			session = domain.createSession(utilitySpace, null, ROUNDS);
+			for (int i = 0; i < bids.length; i++) {
+				bids[i] = domain.getDomain().getRandomBid(rng);
+				utilities[i] = utilitySpace.getUtility(bids[i]);
+			}
+		}
+
+		// Every iteration starts with an empty opponent history and a new model
+		@Setup(Level.Iteration)
+		public void createModel() {
+			session = domain.createSession(session.getUtilitySpace(), null, ROUNDS);
+			model = Group15.createComponents(session, null, SEED).getOpponentModel();
+			next = 0;
+		}
+	}
+
+	@Benchmark
+	public int updateModel(UpdateModelState state) {
+		int i = state.next;
+		state.session.getOpponentBidHistory().add(new BidDetails(state.bids[i], state.utilities[i], 0));
+		state.model.updateModel(state.bids[i], 0);
+		state.next = (i + 1) % OPPONENT_BIDS;
+		return state.model.getGeneration();
+	}
+
+	@State(Scope.Thread)
+	public static class GetBidState {
+		@Param({ "3x4", "4x5", "5x6", "6x7", "7x8", "10x8" })
+		public String size;
+
+		Group15_OMS strategy;
+		BidWindow window = new BidWindow(100);
+
+		@Setup(Level.Trial)
+		public void createStrategy() {
+			Random rng = new Random(SEED);
+			SyntheticDomain domain = createDomain(size);
+			NegotiationSession session = domain.createSession(domain.createUtilitySpace(rng), null, ROUNDS);
+			Group15.Components agent = Group15.createComponents(session, null, SEED);
+			strategy = agent.getOMStrategy();
+
+			OutcomeIndex index = agent.getSessionSpace().getOutcomeIndex();
+			index.query(0.75, 0.85, window);
+			if (window.isEmpty()) { // small domain without bids in the range
+				index.query(index.getMinUtility(), index.getMaxUtility(), window);
+			}
+		}
+	}
+
+	@Benchmark
+	public BidDetails getBid(GetBidState state) {
+		return state.strategy.getBid(state.window);
+	}
+
+	@State(Scope.Thread)
+	public static class NextBidState {
+		@Param({ "3x4", "4x5", "5x6", "6x7", "7x8", "10x8" })
+		public String size;
+
+		BidSelector selector;
+		int round;
+
+		@Setup(Level.Trial)
+		public void createSelector() {
+			Random rng = new Random(SEED);
+			SyntheticDomain domain = createDomain(size);
+			NegotiationSession session = domain.createSession(domain.createUtilitySpace(rng), null, ROUNDS);
+			SessionSpace space = new SessionSpace(session);
+			selector = new BidSelector(space.getOutcomeIndex(), 0.05, 5, 0.16, 0.04, new SplittableRandom(SEED));
+		}
+	}
+
+	@Benchmark
+	public BidDetails getNextBid(NextBidState state) {
+		// Alternate normal rounds, concessions and increases
+		int action = state.round++ % 3 + 1;
+		return state.selector.GetNextBid(action, 0.03);
+	}
+
+	@State(Scope.Thread)
+	public static class AcceptabilityState {
+		@Param({ "3x4", "4x5", "5x6", "6x7", "7x8", "10x8" })
+		public String size;
+
+		Group15_AS acceptance;
+
+		@Setup(Level.Trial)
+		public void createAcceptance() {
+			Random rng = new Random(SEED);
+			SyntheticDomain domain = createDomain(size);
+			AdditiveUtilitySpace utilitySpace = domain.createUtilitySpace(rng);
+			NegotiationSession session = domain.createSession(utilitySpace, null, ROUNDS);
+			Group15.Components agent = Group15.createComponents(session, null, SEED);
+			Group15_BS offering = agent.getOfferingStrategy();
+			offering.setNextBid(offering.determineOpeningBid());
+			Bid opponentBid = domain.getDomain().getRandomBid(rng);
+			session.getOpponentBidHistory().add(new BidDetails(opponentBid, utilitySpace.getUtility(opponentBid), 0));
+			acceptance = agent.getAcceptanceStrategy();
+		}
+	}
+
+	@Benchmark
+	public Actions determineAcceptability(AcceptabilityState state) {
+		return state.acceptance.determineAcceptability();
+	}
+
+	@State(Scope.Thread)
+	public static class EstimateState {
+		@Param({ "3x4", "4x5", "5x6", "6x7", "7x8", "10x8" })
+		public String size;
+
+		NegotiationSession session;
+		SyntheticDomain domain;
+		IncrementalEstimate estimate;
+		Random rng = new Random(SEED);
+
+		@Setup(Level.Trial)
+		public void createUserModel() {
+			domain = createDomain(size);
+			AdditiveUtilitySpace utilitySpace = domain.createUtilitySpace(rng);
+			UserModel userModel = domain.createUserModel(utilitySpace, RANKED_BIDS, rng);
+			session = domain.createSession(utilitySpace, userModel, ROUNDS);
+			estimate = new IncrementalEstimate(new BidCodec(domain.getDomain()),
+					userModel.getBidRanking().getBidOrder());
+		}
+	}
+
+	@Benchmark
+	public AbstractUtilitySpace estimateUtility(EstimateState state) {
+		return new EstimateUtility(state.session).getUtilitySpace();
+	}
+
+	// A bid is ranked at a random position and removed again, so the ranking keeps
+	// its size
+	@Benchmark
+	public UtilityTables updateEstimate(EstimateState state) {
+		int position = state.rng.nextInt(state.estimate.size() + 1);
+		state.estimate.insert(position, state.domain.getDomain().getRandomBid(state.rng));
+		UtilityTables tables = state.estimate.getUtilityTables();
+		state.estimate.remove(position);
+		return tables;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(ComponentBenchmark.class.getSimpleName()).build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,116 @@
+package ai2018.group15.benchmark;
+
+import java.util.Random;
+
+import ai2018.group15.BidCodec;
+import ai2018.group15.BidWindow;
+import ai2018.group15.LazyOutcomeSpace;
+import genius.core.Bid;
+import genius.core.utility.AdditiveUtilitySpace;
+
+/**
+ * Lightweight time dependent opponent used instead of a GENIUS agent in the
+ * simulator. The target utility goes from 1 to a minimum utility as
+ * 1 - (1 - min) * t^(1/e), so e < 1 concedes late (Boulware) and e > 1 concedes
+ * early (Conceder). A random opponent picks a random target above its minimum
+ * utility. An offer is accepted if it is at least the current target utility.
+ */
+public class StandInOpponent {
+	// Size (in utility) of the window to take bids from
+	private static final double WINDOW_SIZE = 0.04;
+	// Max number of bids in the window
+	private static final int WINDOW_BIDS = 16;
+
+	private String name;
+	// Concession exponent, 0 for a random opponent
+	private double e;
+	// Minimum target utility
+	private double minUtility;
+
+	private AdditiveUtilitySpace utilitySpace;
+	private LazyOutcomeSpace outcomeSpace;
+	private BidWindow window = new BidWindow(WINDOW_BIDS);
+	private Random rng;
+
+	public StandInOpponent(String name, double e, double minUtility) {
+		this.name = name;
+		this.e = e;
+		this.minUtility = minUtility;
+	}
+
+	// Concedes only at the very end, like HardHeaded
+	public static StandInOpponent hardHeaded() {
+		return new StandInOpponent("HardHeaded", 0.05, 0.6);
+	}
+
+	public static StandInOpponent boulware() {
+		return new StandInOpponent("Boulware", 0.2, 0.5);
+	}
+
+	public static StandInOpponent conceder() {
+		return new StandInOpponent("Conceder", 2, 0.4);
+	}
+
+	public static StandInOpponent random() {
+		return new StandInOpponent("Random", 0, 0.5);
+	}
+
+	/***
+	 * Creates a new opponent with the same strategy, opponents are not shared
+	 * between sessions
+	 * 
+	 * @return copy of the opponent
+	 */
+	public StandInOpponent copy() {
+		return new StandInOpponent(name, e, minUtility);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void init(AdditiveUtilitySpace utilitySpace, long seed) {
+		this.utilitySpace = utilitySpace;
+		outcomeSpace = new LazyOutcomeSpace(utilitySpace, new BidCodec(utilitySpace.getDomain()));
+		rng = new Random(seed);
+	}
+
+	public double getUtility(Bid bid) {
+		return utilitySpace.getUtility(bid);
+	}
+
+	/***
+	 * Returns the target utility at a time
+	 * 
+	 * @param time normalized time
+	 * @return target utility
+	 */
+	public double getTarget(double time) {
+		if (e == 0) {
+			return minUtility + (1 - minUtility) * rng.nextDouble();
+		}
+		return 1 - (1 - minUtility) * Math.pow(time, 1 / e);
+	}
+
+	public boolean accepts(Bid offer, double time) {
+		return getUtility(offer) >= getTarget(time);
+	}
+
+	/***
+	 * Returns a random bid near the target utility, widening the window until it
+	 * contains a bid
+	 * 
+	 * @param time normalized time
+	 * @return bid to offer
+	 */
+	public Bid chooseBid(double time) {
+		double target = Math.min(getTarget(time), outcomeSpace.getMaxUtility());
+		double size = WINDOW_SIZE;
+		outcomeSpace.query(target - size / 2, target + size / 2, window);
+		while (window.isEmpty()) {
+			size *= 2;
+			outcomeSpace.query(target - size / 2, target + size / 2, window);
+		}
+		return window.getBidDetails(rng.nextInt(window.size())).getBid();
+	}
+}
@@ -0,0 +1,218 @@
+package ai2018.group15.benchmark;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ai2018.group15.Group15;
+import ai2018.group15.OutcomeIndexStore;
+import ai2018.group15.SyntheticDomain;
+import genius.core.Bid;
+import genius.core.bidding.BidDetails;
+import genius.core.boaframework.Actions;
+import genius.core.boaframework.NegotiationSession;
+import genius.core.boaframework.SessionData;
+import genius.core.timeline.DiscreteTimeline;
+import genius.core.uncertainty.UserModel;
+import genius.core.utility.AbstractUtilitySpace;
+import genius.core.utility.AdditiveUtilitySpace;
+
+/**
+ * Headless simulator which runs the BOA components of Group15 against stand-in
+ * opponents, without the GENIUS GUI. Sessions are bilateral alternating offers
+ * with a rounds based timeline on synthetic domains with random profiles, and
+ * are run in parallel on all cores. The components are created the same way
+ * as by Group15, with the store of the agent, and our profiles repeat so later
+ * sessions on a profile load it from the store. Half of our profiles are
+ * negotiated under preference uncertainty, from a ranking of random bids. The utilities, agreement, number of rounds
+ * and timings of every session are written to a CSV file, and a summary is
+ * printed.
+ * 
+ * Usage: java -cp target/benchmarks.jar:lib/genius.jar
+ * ai2018.group15.benchmark.TournamentSimulator [sessions] [rounds] [output.csv]
+ * [threads]
+ */
+public class TournamentSimulator {
+	// Number of issues and number of values per issue of the synthetic domains
+	private static final int[][] SIZES = { { 3, 5 }, { 5, 5 }, { 6, 6 }, { 8, 8 } };
+	// Number of our profiles of every size
+	private static final int PROFILES = 8;
+	// Number of ranked bids of the profiles under preference uncertainty
+	private static final int RANKED_BIDS = 100;
+	// Opponents, every session uses a copy
+	private static final StandInOpponent[] OPPONENTS = { StandInOpponent.hardHeaded(), StandInOpponent.boulware(),
+			StandInOpponent.conceder(), StandInOpponent.random() };
+
+	/**
+	 * Outcome of a single session.
+	 */
+	public static class SessionResult {
+		int id;
+		String opponent;
+		int issues;
+		int values;
+		boolean agreement;
+		int rounds;
+		double ourUtility;
+		double opponentUtility;
+		long initNanos;
+		long agentNanos;
+
+		public String toCsv() {
+			return String.format(Locale.ROOT, "%d,%s,%d,%d,%b,%d,%.6f,%.6f,%.3f,%.3f", id, opponent, issues, values,
+					agreement, rounds, ourUtility, opponentUtility, initNanos / 1e6,
+					rounds == 0 ? 0 : agentNanos / 1e3 / rounds);
+		}
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+		int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 180;
+		String output = args.length > 2 ? args[2] : "sessions.csv";
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+		// Profiles are stored where the agent stores them, set by group15.cache.dir
+		final OutcomeIndexStore store = new OutcomeIndexStore(OutcomeIndexStore.getDefaultDirectory());
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<SessionResult>> futures = new ArrayList<Future<SessionResult>>(sessions);
+		long start = System.nanoTime();
+		for (int i = 0; i < sessions; i++) {
+			final int id = i;
+			futures.add(executor.submit(new Callable<SessionResult>() {
+				@Override
+				public SessionResult call() {
+					return runSession(id, rounds, store);
+				}
+			}));
+		}
+
+		int agreements = 0;
+		double ourUtility = 0;
+		double opponentUtility = 0;
+		try (PrintWriter out = new PrintWriter(new FileWriter(output))) {
+			out.println("session,opponent,issues,values,agreement,rounds,our_utility,opponent_utility,init_ms,"
+					+ "agent_us_per_round");
+			for (Future<SessionResult> future : futures) {
+				SessionResult result = future.get();
+				out.println(result.toCsv());
+				if (result.agreement) {
+					agreements++;
+				}
+				ourUtility += result.ourUtility;
+				opponentUtility += result.opponentUtility;
+			}
+		} finally {
+			executor.shutdown();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.println(String.format(Locale.ROOT,
+				"%d sessions in %.1f s (%.1f sessions/s) on %d threads, agreement rate %.3f, "
+						+ "mean utility %.3f, mean opponent utility %.3f",
+				sessions, seconds, sessions / seconds, threads, (double) agreements / sessions, ourUtility / sessions,
+				opponentUtility / sessions));
+	}
+
+	/***
+	 * Runs one session, the domain, profiles, opponent and who starts are chosen
+	 * by the session id
+	 * 
+	 * @param id     id of the session, also the seed of the session
+	 * @param rounds number of rounds of the session
+	 * @param store  store of previously computed profiles, or null
+	 * @return outcome of the session
+	 */
+	public static SessionResult runSession(int id, int rounds, OutcomeIndexStore store) {
+		Random rng = new Random(id);
+		int[] size = SIZES[id % SIZES.length];
+		SyntheticDomain domain = new SyntheticDomain(size[0], size[1]);
+		// The sessions with the same size and profile share the seed of the profile
+		int profile = id % (SIZES.length * PROFILES);
+		Random profileRng = new Random(profile);
+		AdditiveUtilitySpace ourSpace = domain.createUtilitySpace(profileRng);
+		UserModel userModel = null;
+		if (profile >= SIZES.length * PROFILES / 2) {
+			userModel = domain.createUserModel(ourSpace, RANKED_BIDS, profileRng);
+		}
+		AdditiveUtilitySpace opponentSpace = domain.createUtilitySpace(rng);
+		StandInOpponent opponent = OPPONENTS[(id / SIZES.length) % OPPONENTS.length].copy();
+		opponent.init(opponentSpace, rng.nextLong());
+		boolean opponentStarts = (id / (SIZES.length * OPPONENTS.length)) % 2 == 1;
+
+		SessionResult result = new SessionResult();
+		result.id = id;
+		result.opponent = opponent.getName();
+		result.issues = size[0];
+		result.values = size[1];
+
+		long initStart = System.nanoTime();
+		DiscreteTimeline timeline = new DiscreteTimeline(rounds);
+		NegotiationSession session = new NegotiationSession(new SessionData(), ourSpace, timeline, null,
+				userModel);
+		Group15.Components agent = Group15.createComponents(session, store, rng.nextLong());
+		// Under preference uncertainty the agent only knows its estimated utilities
+		AbstractUtilitySpace estimatedSpace = agent.getSessionSpace().getUtilitySpace();
+		result.initNanos = System.nanoTime() - initStart;
+
+		Bid lastOurBid = null;
+		for (int round = 0; round < rounds; round++) {
+			result.rounds = round + 1;
+
+			// The opponent responds to our last bid, or opens the session
+			if (lastOurBid != null && opponent.accepts(lastOurBid, session.getTime())) {
+				return agreement(result, lastOurBid, ourSpace, opponent);
+			}
+			Bid opponentBid = null;
+			if (lastOurBid != null || opponentStarts) {
+				opponentBid = opponent.chooseBid(session.getTime());
+			}
+
+			// Our agent handles the opponent bid the same way as BoaParty
+			long agentStart = System.nanoTime();
+			if (opponentBid != null) {
+				session.getOpponentBidHistory().add(
+						new BidDetails(opponentBid, estimatedSpace.getUtility(opponentBid), session.getTime()));
+				if (agent.getOMStrategy().canUpdateOM()) {
+					agent.getOpponentModel().updateModel(opponentBid, session.getTime());
+				}
+			}
+			BidDetails bid;
+			if (session.getOwnBidHistory().getHistory().isEmpty()) {
+				bid = agent.getOfferingStrategy().determineOpeningBid();
+			} else {
+				bid = agent.getOfferingStrategy().determineNextBid();
+			}
+			agent.getOfferingStrategy().setNextBid(bid);
+			Actions decision = Actions.Reject;
+			if (!session.getOpponentBidHistory().getHistory().isEmpty()) {
+				decision = agent.getAcceptanceStrategy().determineAcceptability();
+			}
+			result.agentNanos += System.nanoTime() - agentStart;
+
+			if (decision == Actions.Accept) {
+				return agreement(result, opponentBid, ourSpace, opponent);
+			}
+			session.getOwnBidHistory().add(bid);
+			lastOurBid = bid.getBid();
+			timeline.increment();
+		}
+		return result;
+	}
+
+	private static SessionResult agreement(SessionResult result, Bid bid, AdditiveUtilitySpace ourSpace,
+			StandInOpponent opponent) {
+		result.agreement = true;
+		result.ourUtility = ourSpace.getUtility(bid);
+		result.opponentUtility = opponent.getUtility(bid);
+		return result;
+	}
+}
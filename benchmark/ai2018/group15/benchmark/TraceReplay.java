@@ -0,0 +1,194 @@
+package ai2018.group15.benchmark;
+
+import java.io.File;
+import java.util.Locale;
+
+import ai2018.group15.BidCodec;
+import ai2018.group15.ComponentMetrics;
+import ai2018.group15.Group15;
+import ai2018.group15.Group15_AS;
+import ai2018.group15.Group15_BS;
+import ai2018.group15.Group15_OM;
+import ai2018.group15.Group15_OMS;
+import ai2018.group15.SessionSpace;
+import ai2018.group15.SessionTrace;
+import genius.core.AgentID;
+import genius.core.Bid;
+import genius.core.DomainImpl;
+import genius.core.bidding.BidDetails;
+import genius.core.boaframework.Actions;
+import genius.core.boaframework.NegotiationSession;
+import genius.core.boaframework.SessionData;
+import genius.core.timeline.DiscreteTimeline;
+import genius.core.utility.AdditiveUtilitySpace;
+
+/**
+ * Replays a session trace recorded by Group15 through the BOA components, as
+ * fast as they run instead of at the pace of the recorded session. The bids of
+ * the opponents are handled the same way as BoaParty does, and the agent acts
+ * at every recorded turn, with the random generator seeded with the recorded
+ * seed. The timeline is set to the recorded times: the bidding strategy runs
+ * at the start of a turn and the acceptance strategy at its end, so the time
+ * the agent took in the session is seen by the components again. The time per replay and a
+ * digest of the bids the agent made are printed, so replays of the same trace
+ * can be profiled and their decisions compared.
+ *
+ * Usage: java -cp target/benchmarks.jar:lib/genius.jar
+ * ai2018.group15.benchmark.TraceReplay trace domain.xml profile.xml [repeats]
+ */
+public class TraceReplay {
+
+	/**
+	 * Timeline which is set to the times of the trace.
+	 */
+	private static class ReplayTimeline extends DiscreteTimeline {
+		private boolean rounds;
+		private double totalTime;
+		private double time;
+
+		ReplayTimeline(boolean rounds, double totalTime) {
+			super((int) Math.max(1, totalTime));
+			this.rounds = rounds;
+			this.totalTime = totalTime;
+		}
+
+		@Override
+		public Type getType() {
+			return rounds ? Type.Rounds : Type.Time;
+		}
+
+		@Override
+		public double getTotalTime() {
+			return totalTime;
+		}
+
+		@Override
+		public double getCurrentTime() {
+			return time * totalTime;
+		}
+
+		@Override
+		public double getTime() {
+			return time;
+		}
+
+		@Override
+		public boolean isDeadlineReached() {
+			return time >= 1;
+		}
+	}
+
+	/**
+	 * Outcome of a replay.
+	 */
+	private static class ReplayResult {
+		int turns;
+		// Turn at which the agent accepted, -1 if it did not
+		int acceptedTurn = -1;
+		// Hash of the value indices of the bids of the agent
+		long digest = 0xcbf29ce484222325L;
+		long nanos;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 3) {
+			System.out.println("Usage: TraceReplay trace domain.xml profile.xml [repeats]");
+			return;
+		}
+		File file = new File(args[0]);
+		DomainImpl domain = new DomainImpl(args[1]);
+		AdditiveUtilitySpace utilitySpace = new AdditiveUtilitySpace(domain, args[2]);
+		int repeats = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+
+		BidCodec codec = new BidCodec(domain);
+		SessionTrace.Recording recording = SessionTrace.read(file, codec);
+		// The bids are decoded once, so the replays only measure the agent
+		Bid[] bids = new Bid[recording.size()];
+		for (int i = 0; i < bids.length; i++) {
+			bids[i] = recording.getBid(i, codec);
+		}
+
+		ReplayResult first = null;
+		for (int r = 0; r < repeats; r++) {
+			ReplayResult result = replay(recording, bids, utilitySpace, codec);
+			System.out.println(String.format(Locale.ROOT,
+					"replay %d: %d events, %d turns, accepted at turn %d, digest %016x, %.3f ms (%.1f us per turn)", r,
+					recording.size(), result.turns, result.acceptedTurn, result.digest, result.nanos / 1e6,
+					result.turns == 0 ? 0 : result.nanos / 1e3 / result.turns));
+			if (first == null) {
+				first = result;
+			} else if (result.digest != first.digest || result.acceptedTurn != first.acceptedTurn) {
+				System.out.println("replay " + r + " made other decisions than replay 0");
+			}
+		}
+	}
+
+	/***
+	 * Replays a trace once, with the components created by Group15
+	 *
+	 * @param recording    recorded session
+	 * @param bids         bid of every event of the recording
+	 * @param utilitySpace our utility space
+	 * @param codec        codec of the domain
+	 * @return outcome of the replay
+	 */
+	private static ReplayResult replay(SessionTrace.Recording recording, Bid[] bids, AdditiveUtilitySpace utilitySpace,
+			BidCodec codec) {
+		ReplayResult result = new ReplayResult();
+		long start = System.nanoTime();
+		ReplayTimeline timeline = new ReplayTimeline(recording.isRounds(), recording.getTotalTime());
+		NegotiationSession session = new NegotiationSession(new SessionData(), utilitySpace, timeline, null, null);
+		// Every replay computes the outcome space again, so no store is used
+		Group15.Components agent = Group15.createComponents(session, null, recording.getSeed());
+		SessionSpace space = agent.getSessionSpace();
+		Group15_OM model = agent.getOpponentModel();
+		Group15_OMS omStrategy = agent.getOMStrategy();
+		Group15_BS offering = agent.getOfferingStrategy();
+		Group15_AS acceptance = agent.getAcceptanceStrategy();
+
+		int[] indices = new int[codec.getIssueCount()];
+		for (int i = 0; i < recording.size(); i++) {
+			timeline.time = recording.getTime(i);
+			if (recording.getType(i) == SessionTrace.BID) {
+				Bid bid = bids[i];
+				int opponent = recording.getOpponent(i);
+				model.setSender(opponent == 0 ? null : new AgentID("Opponent " + opponent));
+				session.getOpponentBidHistory()
+						.add(new BidDetails(bid, utilitySpace.getUtility(bid), session.getTime()));
+				if (omStrategy.canUpdateOM()) {
+					model.updateModel(bid, session.getTime());
+				}
+				continue;
+			}
+
+			// The agent acts the same way as BoaParty.chooseAction
+			BidDetails bid;
+			if (session.getOwnBidHistory().getHistory().isEmpty()) {
+				bid = offering.determineOpeningBid();
+			} else {
+				bid = offering.determineNextBid();
+			}
+			offering.setNextBid(bid);
+			timeline.time = recording.getEndTime(i);
+			Actions decision = Actions.Reject;
+			if (!session.getOpponentBidHistory().getHistory().isEmpty()) {
+				decision = acceptance.determineAcceptability();
+			}
+			if (decision == Actions.Accept) {
+				result.acceptedTurn = result.turns;
+				break;
+			}
+			session.getOwnBidHistory().add(bid);
+			for (int index : codec.toIndices(bid.getBid(), indices)) {
+				result.digest = (result.digest ^ index) * 0x100000001b3L;
+			}
+			result.turns++;
+		}
+		result.nanos = System.nanoTime() - start;
+
+		if (ComponentMetrics.ENABLED) {
+			System.out.print(space.getMetrics().summary());
+		}
+		return result;
+	}
+}
@@ -0,0 +1,174 @@
+package ai2018.group15;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/**
+ * Checks that the selector, which skips empty windows with lookups in the
+ * sorted outcomes, moves its window to the same place and picks the same bids
+ * as the selector it replaced, which queried the window again after every
+ * slide.
+ */
+public class BidSelectorTest {
+
+	/**
+	 * The selector as it was before empty windows were skipped.
+	 */
+	private static class ReferenceSelector {
+		private SlidingWindow sw;
+		private double maxSwSize;
+		private int maxBidCount;
+		private double maxConcessionAmount;
+		private double concessionAmount;
+		private double maxIncreaseAmount;
+		private double increaseAmount;
+		private OutcomeIndex outcomespace;
+		private BidWindow BidList;
+		private SplittableRandom rng;
+
+		ReferenceSelector(OutcomeIndex ocs, double maxWindowSize, int maxBids, double maxConcession,
+				double maxIncrease, SplittableRandom random) {
+			outcomespace = ocs;
+			sw = new SlidingWindow(outcomespace.getMaxUtility(), maxWindowSize);
+			BidList = new BidWindow(maxBids);
+			updateBidList();
+			maxBidCount = maxBids;
+			maxSwSize = maxWindowSize;
+			maxConcessionAmount = maxConcession;
+			rng = random;
+			maxIncreaseAmount = maxIncrease;
+		}
+
+		long getNextBid(int action, double newDifference) {
+			switch (action) {
+			case 1:
+				sw.setLower(sw.getUpper() - maxSwSize);
+				break;
+			case 2:
+				concessionAmount = Math.abs(newDifference);
+				performConcession();
+				break;
+			case 3:
+				increaseAmount = Math.abs(newDifference);
+				increaseUtility();
+				break;
+			}
+			updateBidList();
+			return BidList.getCode(rng.nextInt(Math.min(BidList.size(), maxBidCount)));
+		}
+
+		private void increaseUtility() {
+			sw.slideUp(Math.min(increaseAmount, maxIncreaseAmount));
+			updateBidList();
+			if (BidList.isEmpty()) {
+				if (sw.getUpper() < 1) {
+					increaseUtility();
+				} else {
+					sw.setUpper(outcomespace.getMaxUtility());
+					sw.setLower(outcomespace.getMaxUtility());
+				}
+			}
+		}
+
+		private void performConcession() {
+			sw.slideDown(Math.min(concessionAmount, maxConcessionAmount));
+			updateBidList();
+			if (BidList.isEmpty()) {
+				if (sw.getLower() > 0) {
+					performConcession();
+				} else {
+					sw.setUpper(outcomespace.getMinUtility());
+					sw.setLower(outcomespace.getMinUtility());
+				}
+			}
+		}
+
+		private void updateBidList() {
+			outcomespace.query(sw.getLower(), sw.getUpper(), BidList);
+		}
+	}
+
+	/***
+	 * Creates an index over all bids of a domain with random utilities. Part of
+	 * the utilities is rounded, so there are ties and gaps in the outcomes.
+	 *
+	 * @param domain domain of the bids
+	 * @param rng    random generator
+	 * @return index of the outcomes
+	 */
+	static UtilityIndex createIndex(SyntheticDomain domain, Random rng) {
+		BidCodec codec = new BidCodec(domain.getDomain());
+		int size = (int) codec.getNumberOfBids();
+		double[] utilities = new double[size];
+		long[] codes = new long[size];
+		// Rounding to a few steps leaves large gaps between the outcomes
+		int steps = rng.nextBoolean() ? 20 : 1000000;
+		double spread = 0.2 + 0.8 * rng.nextDouble();
+		for (int i = 0; i < size; i++) {
+			utilities[i] = Math.round((1 - spread * rng.nextDouble()) * steps) / (double) steps;
+			codes[i] = i;
+		}
+		Arrays.sort(utilities);
+		for (int i = 0; i < size / 2; i++) {
+			double utility = utilities[i];
+			utilities[i] = utilities[size - 1 - i];
+			utilities[size - 1 - i] = utility;
+		}
+		return new UtilityIndex(codec, utilities, codes);
+	}
+
+	@Test
+	public void picksTheSameBidsAsTheRequeryingSelector() {
+		Random rng = new Random(22);
+		SyntheticDomain[] domains = { new SyntheticDomain(2, 3), new SyntheticDomain(3, 3),
+				new SyntheticDomain(4, 5) };
+		for (int run = 0; run < 3000; run++) {
+			UtilityIndex index = createIndex(domains[run % domains.length], rng);
+			double windowSize = 0.01 + rng.nextDouble() * 0.2;
+			double maxConcession = 0.01 + rng.nextDouble() * 0.1;
+			double maxIncrease = 0.01 + rng.nextDouble() * 0.1;
+			long seed = rng.nextLong();
+			ReferenceSelector reference = new ReferenceSelector(index, windowSize, 5, maxConcession, maxIncrease,
+					new SplittableRandom(seed));
+			BidSelector selector = new BidSelector(index, windowSize, 5, maxConcession, maxIncrease,
+					new SplittableRandom(seed));
+
+			for (int step = 0; step < 40; step++) {
+				int action = 1 + rng.nextInt(3);
+				// The reference does not terminate when it slides by 0 over a gap
+				double difference = 0.001 + rng.nextDouble() * 0.05;
+				long expected = reference.getNextBid(action, difference);
+				long code = index.getCodec().encode(selector.GetNextBid(action, difference).getBid());
+				assertEquals("step " + step + " of run " + run, expected, code);
+				assertEquals(reference.sw.getLower(), selector.getLower(), 0);
+			}
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void jumpsOverGapsWithTinySteps() {
+		SyntheticDomain domain = new SyntheticDomain(2, 3);
+		BidCodec codec = new BidCodec(domain.getDomain());
+		int size = (int) codec.getNumberOfBids();
+		double[] utilities = new double[size];
+		long[] codes = new long[size];
+		// A few good bids, and a wide gap to the other bids
+		for (int i = 0; i < size; i++) {
+			utilities[i] = i < 3 ? 0.9 : 0.3;
+			codes[i] = i;
+		}
+		UtilityIndex index = new UtilityIndex(codec, utilities, codes);
+		BidSelector selector = new BidSelector(index, 0.05, 5, 0.1, 0.1, new SplittableRandom(22));
+
+		// Sliding by 1e-12 would take billions of steps to cross the gap
+		assertEquals(0.3, selector.GetNextBid(2, 1e-12).getMyUndiscountedUtil(), 0);
+		assertEquals(0.9, selector.GetNextBid(3, 1e-12).getMyUndiscountedUtil(), 0);
+		// A window that holds bids does not move without a step
+		assertEquals(0.9, selector.GetNextBid(2, 0).getMyUndiscountedUtil(), 0);
+	}
+}
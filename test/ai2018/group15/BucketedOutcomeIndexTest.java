@@ -0,0 +1,75 @@
+package ai2018.group15;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that locating utilities through the bucket directory gives the same
+ * positions and windows as the binary search over the whole index.
+ */
+public class BucketedOutcomeIndexTest {
+
+	// Utilities at, just above and just below the outcomes and the bucket boundaries,
+	// and random utilities within and outside the range of the index
+	private static double[] createProbes(UtilityIndex index, double width, Random rng) {
+		double[] probes = new double[index.size() * 3 + 300];
+		int p = 0;
+		for (int i = 0; i < index.size(); i++) {
+			probes[p++] = index.getUtility(i);
+			probes[p++] = Math.nextUp(index.getUtility(i));
+			probes[p++] = Math.nextDown(index.getUtility(i));
+		}
+		for (int b = 0; b < 100; b++) {
+			probes[p++] = index.getMaxUtility() - b * width;
+			probes[p++] = Math.nextUp(index.getMaxUtility() - b * width);
+		}
+		while (p < probes.length) {
+			probes[p++] = rng.nextDouble() * 1.4 - 0.2;
+		}
+		return probes;
+	}
+
+	@Test
+	public void locatesTheSamePositionsAsTheBinarySearch() {
+		Random rng = new Random(23);
+		SyntheticDomain[] domains = { new SyntheticDomain(1, 1), new SyntheticDomain(2, 3),
+				new SyntheticDomain(4, 5), new SyntheticDomain(5, 6) };
+		for (int run = 0; run < 400; run++) {
+			UtilityIndex index = BidSelectorTest.createIndex(domains[run % domains.length], rng);
+			double width;
+			switch (run % 4) {
+			case 0:
+				width = 0; // a single bucket
+				break;
+			case 1:
+				width = 1e-9; // more than the largest number of buckets
+				break;
+			default:
+				width = 0.001 + rng.nextDouble() * 0.1;
+				break;
+			}
+			BucketedOutcomeIndex bucketed = new BucketedOutcomeIndex(index, width);
+			BidWindow expected = new BidWindow();
+			BidWindow window = new BidWindow();
+
+			double[] probes = createProbes(index, width, rng);
+			for (double utility : probes) {
+				assertEquals("at or below " + utility, index.indexAtOrBelow(utility), bucketed.indexAtOrBelow(utility));
+				assertEquals("below " + utility, index.indexBelow(utility), bucketed.indexBelow(utility));
+			}
+			for (int q = 0; q < 200; q++) {
+				double lower = probes[rng.nextInt(probes.length)];
+				double upper = probes[rng.nextInt(probes.length)];
+				index.query(lower, upper, expected);
+				bucketed.query(lower, upper, window);
+				assertEquals(expected.size(), window.size());
+				for (int i = 0; i < window.size(); i++) {
+					assertEquals(expected.getCode(i), window.getCode(i));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package ai2018.group15;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import agents.org.apache.commons.math.stat.inference.ChiSquareTestImpl;
+
+/**
+ * Checks that comparing the chi-square statistic with the critical value gives
+ * the same decisions as comparing the p-value of commons-math with 0.05.
+ */
+public class ChiSquareTest {
+	private ChiSquareTestImpl test = new ChiSquareTestImpl();
+
+	@Test
+	public void criticalValuesHaveAPValueOf005() throws Exception {
+		for (int degreesOfFreedom = 1; degreesOfFreedom <= 200; degreesOfFreedom++) {
+			double statistic = ChiSquare.criticalValue(degreesOfFreedom);
+			double pValue = 1 - regularizedGammaP(degreesOfFreedom / 2.0, statistic / 2);
+			assertEquals("degrees of freedom " + degreesOfFreedom, 0.05, pValue, 1e-4);
+		}
+	}
+
+	@Test
+	public void decidesAsThePValue() throws Exception {
+		Random rng = new Random(17);
+		int compared = 0;
+		while (compared < 20000) {
+			int length = 2 + rng.nextInt(rng.nextBoolean() ? 8 : 60);
+			int maxCount = 1 + rng.nextInt(12);
+			int[] expected = new int[length];
+			int[] observed = new int[length];
+			int categories = 0;
+			for (int v = 0; v < length; v++) {
+				// Values that were not offered in the new set are left out of the test
+				expected[v] = rng.nextInt(4) == 0 ? 0 : rng.nextInt(maxCount + 1);
+				observed[v] = rng.nextInt(maxCount + 1);
+				if (expected[v] > 0) {
+					categories++;
+				}
+			}
+			if (categories < 2) {
+				continue;
+			}
+
+			double[] expectedCounts = new double[categories];
+			long[] observedCounts = new long[categories];
+			long observedSum = 0;
+			int c = 0;
+			for (int v = 0; v < length; v++) {
+				if (expected[v] > 0) {
+					expectedCounts[c] = expected[v];
+					observedCounts[c] = observed[v];
+					observedSum += observed[v];
+					c++;
+				}
+			}
+			if (observedSum == 0) {
+				// commons-math gives a p-value of NaN, which is not above 0.05
+				assertEquals(true, ChiSquare.isSignificant(expected, observed));
+				continue;
+			}
+			double pValue = test.chiSquareTest(expectedCounts, observedCounts);
+			// The critical values are rounded to 6 decimals
+			if (Math.abs(pValue - 0.05) < 1e-5) {
+				continue;
+			}
+			assertEquals("p-value " + pValue, !(pValue > 0.05), ChiSquare.isSignificant(expected, observed));
+			compared++;
+		}
+	}
+
+	@Test
+	public void fewerThanTwoValuesAreNotSignificant() {
+		assertEquals(false, ChiSquare.isSignificant(new int[] { 0, 4, 0 }, new int[] { 3, 0, 1 }));
+		assertEquals(false, ChiSquare.isSignificant(new int[] { 0, 0 }, new int[] { 1, 1 }));
+	}
+
+	/***
+	 * Regularized lower incomplete gamma function, by its series for x below a + 1
+	 * and its continued fraction otherwise
+	 *
+	 * @param a shape
+	 * @param x upper limit of the integral
+	 * @return P(a, x)
+	 */
+	private static double regularizedGammaP(double a, double x) {
+		double logPrefix = -x + a * Math.log(x) - logGamma(a);
+		if (x < a + 1) {
+			double term = 1 / a;
+			double sum = term;
+			for (int n = 1; Math.abs(term) > Math.abs(sum) * 1e-16; n++) {
+				term *= x / (a + n);
+				sum += term;
+			}
+			return Math.exp(logPrefix) * sum;
+		}
+		double b = x + 1 - a;
+		double c = 1 / 1e-300;
+		double d = 1 / b;
+		double h = d;
+		for (int i = 1; i < 10000; i++) {
+			double an = -i * (i - a);
+			b += 2;
+			d = an * d + b;
+			d = Math.abs(d) < 1e-300 ? 1e-300 : d;
+			c = b + an / c;
+			c = Math.abs(c) < 1e-300 ? 1e-300 : c;
+			d = 1 / d;
+			h *= d * c;
+			if (Math.abs(d * c - 1) < 1e-16) {
+				break;
+			}
+		}
+		return 1 - Math.exp(logPrefix) * h;
+	}
+
+	// Lanczos approximation of the logarithm of the gamma function
+	private static double logGamma(double x) {
+		double[] coefficients = { 76.18009172947146, -86.50532032941677, 24.01409824083091, -1.231739572450155,
+				0.1208650973866179e-2, -0.5395239384953e-5 };
+		double y = x;
+		double tmp = x + 5.5;
+		tmp -= (x + 0.5) * Math.log(tmp);
+		double series = 1.000000000190015;
+		for (double coefficient : coefficients) {
+			series += coefficient / ++y;
+		}
+		return -tmp + Math.log(2.5066282746310005 * series / x);
+	}
+}
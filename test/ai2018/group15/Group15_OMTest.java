@@ -0,0 +1,226 @@
+package ai2018.group15;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import agents.org.apache.commons.math.MathException;
+import agents.org.apache.commons.math.stat.inference.ChiSquareTestImpl;
+import genius.core.Bid;
+import genius.core.bidding.BidDetails;
+import genius.core.boaframework.NegotiationSession;
+import genius.core.issue.Issue;
+import genius.core.issue.IssueDiscrete;
+import genius.core.issue.Value;
+import genius.core.issue.ValueDiscrete;
+import genius.core.utility.AdditiveUtilitySpace;
+import genius.core.utility.EvaluatorDiscrete;
+
+/**
+ * Checks that the opponent model, which counts the values of the bids in
+ * tables and estimates the utility of a set from the value counts of the
+ * history, learns the same weights, evaluations and concessions as the frequency
+ * model it replaced, which counted in maps, scanned the whole opponent history
+ * to estimate a set and tested the sets with commons-math.
+ */
+public class Group15_OMTest {
+	// Number of rounds of the sessions
+	private static final int ROUNDS = 180;
+
+	/**
+	 * The frequency model as it was before the counts were kept in tables, on a
+	 * single opponent.
+	 */
+	private static class ReferenceModel {
+		private NegotiationSession negotiationSession;
+		private List<Issue> issues;
+		private int bidSetSize;
+		private ArrayList<Bid> oppBidSet = new ArrayList<Bid>();
+		private ArrayList<Bid> prevOppBidSet = new ArrayList<Bid>();
+		private double[] weights;
+		private ArrayList<HashMap<Value, Integer>> evaluations = new ArrayList<HashMap<Value, Integer>>();
+		private boolean conceded = false;
+		private ChiSquareTestImpl test = new ChiSquareTestImpl();
+
+		ReferenceModel(NegotiationSession negotiationSession, int bidSetSize) {
+			this.negotiationSession = negotiationSession;
+			this.bidSetSize = bidSetSize;
+			issues = negotiationSession.getDomain().getIssues();
+			weights = new double[issues.size()];
+			for (int i = 0; i < issues.size(); i++) {
+				weights[i] = 1D / issues.size();
+				HashMap<Value, Integer> evaluation = new HashMap<Value, Integer>();
+				for (ValueDiscrete value : ((IssueDiscrete) issues.get(i)).getValues()) {
+					evaluation.put(value, 1);
+				}
+				evaluations.add(evaluation);
+			}
+		}
+
+		void updateModel(double time) throws MathException {
+			List<BidDetails> history = negotiationSession.getOpponentBidHistory().getHistory();
+			if (history.size() < 2) {
+				return;
+			}
+			oppBidSet.add(history.get(history.size() - 1).getBid());
+			if (oppBidSet.size() != bidSetSize) {
+				return;
+			}
+
+			boolean[] noConcede = new boolean[issues.size()];
+			int noConcedeCount = 0;
+			boolean concession = false;
+			if (!prevOppBidSet.isEmpty()) {
+				for (int i = 0; i < issues.size(); i++) {
+					int issueNumber = issues.get(i).getNumber();
+					HashMap<Value, Integer> frequencyCount = frequencyCount(oppBidSet, issueNumber);
+					HashMap<Value, Integer> prevFrequencyCount = frequencyCount(prevOppBidSet, issueNumber);
+					double[] expected = new double[frequencyCount.size()];
+					long[] observed = new long[frequencyCount.size()];
+					int iteration = 0;
+					for (Value value : frequencyCount.keySet()) {
+						expected[iteration] = frequencyCount.get(value);
+						Integer prevCount = prevFrequencyCount.get(value);
+						observed[iteration] = prevCount == null ? 0 : prevCount;
+						iteration++;
+					}
+					double testResult = 1;
+					if (expected.length >= 2) {
+						testResult = test.chiSquareTest(expected, observed);
+					}
+					if (testResult > 0.05) {
+						noConcede[i] = true;
+						noConcedeCount++;
+					} else if (estimateSetUtility(frequencyCount, issueNumber) < estimateSetUtility(
+							prevFrequencyCount, issueNumber)) {
+						concession = true;
+					}
+				}
+			}
+
+			if (concession && noConcedeCount != issues.size()) {
+				for (int i = 0; i < issues.size(); i++) {
+					if (noConcede[i]) {
+						weights[i] += 10 * Math.pow(time, 5);
+						double weightSum = 0;
+						for (double weight : weights) {
+							weightSum += weight;
+						}
+						for (int j = 0; j < weights.length; j++) {
+							weights[j] /= weightSum;
+						}
+					}
+				}
+			}
+
+			for (Bid bid : oppBidSet) {
+				for (int i = 0; i < issues.size(); i++) {
+					Value value = bid.getValue(issues.get(i).getNumber());
+					evaluations.get(i).put(value, evaluations.get(i).get(value) + 1);
+				}
+			}
+			prevOppBidSet = new ArrayList<Bid>(oppBidSet);
+			oppBidSet.clear();
+			conceded = concession;
+		}
+
+		// Scans the whole opponent history
+		private int estimateSetUtility(HashMap<Value, Integer> fcount, int issueNumber) {
+			int result = 0;
+			for (BidDetails bidDetails : negotiationSession.getOpponentBidHistory().getHistory()) {
+				Integer count = fcount.get(bidDetails.getBid().getValue(issueNumber));
+				if (count != null) {
+					result += count;
+				}
+			}
+			return result;
+		}
+
+		private static HashMap<Value, Integer> frequencyCount(List<Bid> bids, int issueNumber) {
+			HashMap<Value, Integer> fcount = new HashMap<Value, Integer>();
+			for (Bid bid : bids) {
+				Value value = bid.getValue(issueNumber);
+				Integer count = fcount.get(value);
+				fcount.put(value, count == null ? 1 : count + 1);
+			}
+			return fcount;
+		}
+	}
+
+	/***
+	 * Feeds the bids of an opponent which keeps most of its values and now and
+	 * then moves an issue to another value, to both models, and compares them
+	 * after every bid
+	 *
+	 * @param issueCount number of issues of the domain
+	 * @param valueCount number of values per issue
+	 * @param seed       seed of the bids
+	 * @return number of sets after which the opponent conceded
+	 */
+	private int compareModels(int issueCount, int valueCount, long seed) throws Exception {
+		Random rng = new Random(seed);
+		SyntheticDomain domain = new SyntheticDomain(issueCount, valueCount);
+		AdditiveUtilitySpace utilitySpace = domain.createUtilitySpace(rng);
+		NegotiationSession session = domain.createSession(utilitySpace, null, ROUNDS);
+		Group15_OM model = new Group15_OM();
+		model.init(session, null);
+		// Set size of the model at this session length
+		int bidSetSize = Math.min(8, Math.max(4, (int) Math.floor(4 * Math.sqrt(ROUNDS / 100.0))));
+		ReferenceModel reference = new ReferenceModel(session, bidSetSize);
+
+		List<Issue> issues = domain.getDomain().getIssues();
+		int[] preferred = new int[issueCount];
+		int concessions = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			double time = (double) round / ROUNDS;
+			HashMap<Integer, Value> values = new HashMap<Integer, Value>();
+			for (int i = 0; i < issueCount; i++) {
+				if (rng.nextDouble() < 0.05) {
+					preferred[i] = rng.nextInt(valueCount);
+				}
+				int value = rng.nextDouble() < 0.8 ? preferred[i] : rng.nextInt(valueCount);
+				IssueDiscrete issue = (IssueDiscrete) issues.get(i);
+				values.put(issue.getNumber(), issue.getValue(value));
+			}
+			Bid bid = new Bid(domain.getDomain(), values);
+			session.getOpponentBidHistory().add(new BidDetails(bid, utilitySpace.getUtility(bid), time));
+			model.updateModel(bid, time);
+			reference.updateModel(time);
+
+			assertEquals("concession in round " + round, reference.conceded, model.opponentConceeded());
+			if (reference.conceded && (round + 1) % bidSetSize == 0) {
+				concessions++;
+			}
+			AdditiveUtilitySpace learned = model.getOpponentUtilitySpace();
+			for (int i = 0; i < issueCount; i++) {
+				IssueDiscrete issue = (IssueDiscrete) issues.get(i);
+				assertEquals("weight in round " + round, reference.weights[i], learned.getWeight(issue.getNumber()),
+						1e-12);
+				EvaluatorDiscrete evaluator = (EvaluatorDiscrete) learned.getEvaluator(issue.getNumber());
+				for (ValueDiscrete value : issue.getValues()) {
+					assertEquals("evaluation in round " + round, reference.evaluations.get(i).get(value),
+							evaluator.getEvaluationNotNormalized(value));
+				}
+			}
+		}
+		return concessions;
+	}
+
+	@Test
+	public void learnsTheSameModelAsTheMapBasedModel() throws Exception {
+		int concessions = 0;
+		for (long seed = 1; seed <= 20; seed++) {
+			concessions += compareModels(3, 4, seed);
+			concessions += compareModels(6, 7, seed);
+			concessions += compareModels(10, 3, seed);
+		}
+		// The weight update after a concession must have been compared as well
+		assertTrue(concessions > 0);
+	}
+}
@@ -0,0 +1,84 @@
+package ai2018.group15;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import genius.core.AgentID;
+import genius.core.Bid;
+import genius.core.bidding.BidDetails;
+import genius.core.boaframework.NegotiationSession;
+import genius.core.utility.AdditiveUtilitySpace;
+
+/**
+ * Checks the quantiles and the trend of the history index against the recent
+ * bids of every opponent, sorted and averaged again after every bid.
+ */
+public class HistoryIndexTest {
+
+	// Utility at a quantile of the last WINDOW_SIZE utilities, sorted again
+	private static double quantile(List<Double> utilities, double quantile) {
+		int from = Math.max(0, utilities.size() - HistoryIndex.WINDOW_SIZE);
+		double[] recent = new double[utilities.size() - from];
+		for (int i = 0; i < recent.length; i++) {
+			recent[i] = utilities.get(from + i);
+		}
+		Arrays.sort(recent);
+		return recent[(int) Math.round(quantile * (recent.length - 1))];
+	}
+
+	private static double trend(List<Double> utilities) {
+		double trend = 0;
+		for (int i = 1; i < utilities.size(); i++) {
+			double change = utilities.get(i) - utilities.get(i - 1);
+			trend = i == 1 ? change : trend + 0.2 * (change - trend);
+		}
+		return trend;
+	}
+
+	@Test
+	public void keepsTheStatisticsOfEveryOpponent() {
+		Random rng = new Random(24);
+		SyntheticDomain domain = new SyntheticDomain(4, 5);
+		AdditiveUtilitySpace utilitySpace = domain.createUtilitySpace(rng);
+		NegotiationSession session = domain.createSession(utilitySpace, null, 1000);
+		HistoryIndex history = new HistoryIndex(session);
+		AgentID[] senders = { new AgentID("A"), new AgentID("B"), new AgentID("C") };
+		Map<AgentID, List<Double>> utilities = new HashMap<AgentID, List<Double>>();
+		for (AgentID sender : senders) {
+			utilities.put(sender, new ArrayList<Double>());
+		}
+
+		double best = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < 300; i++) {
+			AgentID sender = senders[rng.nextInt(senders.length)];
+			history.setSender(sender);
+			Bid bid = domain.getDomain().getRandomBid(rng);
+			double utility = utilitySpace.getUtility(bid);
+			session.getOpponentBidHistory().add(new BidDetails(bid, utility, i / 300.0));
+			utilities.get(sender).add(utility);
+			best = Math.max(best, utility);
+
+			// Statistics are not read after every bid, so bids of several senders are added
+			// at once
+			if (rng.nextInt(3) == 0) {
+				continue;
+			}
+			List<Double> own = utilities.get(sender);
+			assertEquals(utility, history.getLastUtility(), 0);
+			assertEquals(best, history.getBestBid().getMyUndiscountedUtil(), 0);
+			assertEquals(Math.min(own.size(), HistoryIndex.WINDOW_SIZE), history.getRecentCount());
+			for (double quantile : new double[] { 0, 0.1, 0.5, 0.9, 1 }) {
+				assertEquals(quantile(own, quantile), history.getQuantile(quantile), 0);
+			}
+			assertEquals(trend(own), history.getTrend(), 1e-12);
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package ai2018.group15;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import genius.core.Bid;
+import genius.core.boaframework.NegotiationSession;
+import genius.core.uncertainty.BidRanking;
+import genius.core.uncertainty.UserModel;
+
+/**
+ * Checks that the incremental estimate gives the same utility tables as a
+ * batch EstimateUtility over the changed ranking, after bids are inserted,
+ * moved and removed and after the ranking is replaced.
+ */
+public class IncrementalEstimateTest {
+
+	/***
+	 * Estimates the utility tables of a ranking with EstimateUtility
+	 *
+	 * @param domain   domain of the bids
+	 * @param bidOrder ranked bids, from the worst to the best bid
+	 * @return estimated utility tables
+	 */
+	private static UtilityTables batchEstimate(SyntheticDomain domain, List<Bid> bidOrder) {
+		UserModel userModel = new UserModel(new BidRanking(bidOrder, 0, 1));
+		NegotiationSession session = domain.createSession(domain.createUtilitySpace(new Random(0)), userModel, 100);
+		return new EstimateUtility(session, new BidCodec(domain.getDomain())).getUtilityTables();
+	}
+
+	private static void assertTablesEqual(UtilityTables expected, UtilityTables actual) {
+		for (int j = 0; j < expected.getWeights().length; j++) {
+			assertEquals(expected.getWeights()[j], actual.getWeights()[j], 1e-12);
+			for (int v = 0; v < expected.getValueUtilities()[j].length; v++) {
+				double expectedUtility = expected.getValueUtilities()[j][v];
+				double utility = actual.getValueUtilities()[j][v];
+				// Issues without value weights give NaN in both
+				if (Double.isNaN(expectedUtility)) {
+					assertEquals(Double.NaN, utility, 0);
+				} else {
+					assertEquals(expectedUtility, utility, 1e-12);
+				}
+			}
+		}
+	}
+
+	private static List<Bid> randomBids(SyntheticDomain domain, int count, Random rng) {
+		List<Bid> bids = new ArrayList<Bid>();
+		for (int i = 0; i < count; i++) {
+			bids.add(domain.getDomain().getRandomBid(rng));
+		}
+		return bids;
+	}
+
+	@Test
+	public void matchesTheBatchEstimateAfterEveryChange() {
+		Random rng = new Random(16);
+		SyntheticDomain[] domains = { new SyntheticDomain(2, 2), new SyntheticDomain(3, 4),
+				new SyntheticDomain(6, 7) };
+		for (SyntheticDomain domain : domains) {
+			BidCodec codec = new BidCodec(domain.getDomain());
+			List<Bid> bidOrder = randomBids(domain, 20, rng);
+			IncrementalEstimate estimate = new IncrementalEstimate(codec, bidOrder);
+			assertTablesEqual(batchEstimate(domain, bidOrder), estimate.getUtilityTables());
+
+			for (int step = 0; step < 3000; step++) {
+				int action = rng.nextInt(bidOrder.size() < 3 ? 1 : 4);
+				if (action <= 1) {
+					// Bids are mostly inserted near one position, so the labels run out there
+					int position = step % 7 == 0 ? rng.nextInt(bidOrder.size() + 1)
+							: Math.min(bidOrder.size(), bidOrder.size() / 3 + rng.nextInt(2));
+					Bid bid = domain.getDomain().getRandomBid(rng);
+					bidOrder.add(position, bid);
+					estimate.insert(position, bid);
+				} else if (action == 2) {
+					int from = rng.nextInt(bidOrder.size());
+					int to = rng.nextInt(bidOrder.size());
+					bidOrder.add(to, bidOrder.remove(from));
+					estimate.move(from, to);
+				} else {
+					int position = rng.nextInt(bidOrder.size());
+					bidOrder.remove(position);
+					estimate.remove(position);
+				}
+				if (step % 10 == 0) {
+					assertTablesEqual(batchEstimate(domain, bidOrder), estimate.getUtilityTables());
+				}
+			}
+			assertTablesEqual(batchEstimate(domain, bidOrder), estimate.getUtilityTables());
+			assertEquals(bidOrder.size(), estimate.size());
+			for (int i = 0; i < bidOrder.size(); i++) {
+				assertEquals(codec.encode(bidOrder.get(i)), codec.encode(estimate.getIndices(i)));
+			}
+		}
+	}
+
+	@Test
+	public void updatesToANewRanking() {
+		Random rng = new Random(17);
+		SyntheticDomain domain = new SyntheticDomain(4, 5);
+		BidCodec codec = new BidCodec(domain.getDomain());
+		List<Bid> bidOrder = randomBids(domain, 200, rng);
+		IncrementalEstimate estimate = new IncrementalEstimate(codec, bidOrder);
+		for (int run = 0; run < 50; run++) {
+			// A few bids are ranked, moved and dropped, or the ranking is replaced
+			List<Bid> newOrder = new ArrayList<Bid>(bidOrder);
+			if (run % 10 == 9) {
+				Collections.shuffle(newOrder, rng);
+			}
+			for (int change = rng.nextInt(10); change > 0; change--) {
+				newOrder.add(rng.nextInt(newOrder.size() + 1), domain.getDomain().getRandomBid(rng));
+				newOrder.add(rng.nextInt(newOrder.size()), newOrder.remove(rng.nextInt(newOrder.size())));
+				newOrder.remove(rng.nextInt(newOrder.size()));
+			}
+			estimate.update(newOrder);
+			assertTablesEqual(batchEstimate(domain, newOrder), estimate.getUtilityTables());
+			for (int i = 0; i < newOrder.size(); i++) {
+				assertEquals(codec.encode(newOrder.get(i)), codec.encode(estimate.getIndices(i)));
+			}
+			bidOrder = newOrder;
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package ai2018.group15;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import genius.core.Bid;
+import genius.core.bidding.BidDetails;
+import genius.core.boaframework.NegotiationSession;
+import genius.core.utility.AdditiveUtilitySpace;
+
+/**
+ * Checks the staircase of the Pareto frontier against the outcomes that are not
+ * dominated by any other outcome, found by comparing every pair of outcomes,
+ * while the opponent model changes.
+ */
+public class ParetoFrontierTest {
+
+	/***
+	 * Finds the outcomes with an own utility of at least a utility that are not
+	 * dominated. Of equal outcomes only the first is on the frontier.
+	 *
+	 * @param index             outcome index
+	 * @param opponentUtilities opponent utility of every outcome
+	 * @param lower             lowest own utility
+	 * @return position of every outcome on the frontier, from high to low own
+	 *         utility
+	 */
+	private static List<Integer> bruteForce(UtilityIndex index, double[] opponentUtilities, double lower) {
+		List<Integer> frontier = new ArrayList<Integer>();
+		for (int i = 0; i < index.size(); i++) {
+			if (index.getUtility(i) < lower) {
+				continue;
+			}
+			boolean dominated = false;
+			for (int j = 0; j < index.size() && !dominated; j++) {
+				if (j == i || index.getUtility(j) < index.getUtility(i) || opponentUtilities[j] < opponentUtilities[i]) {
+					continue;
+				}
+				boolean equal = index.getUtility(j) == index.getUtility(i) && opponentUtilities[j] == opponentUtilities[i];
+				dominated = !equal || j < i;
+			}
+			if (!dominated) {
+				frontier.add(i);
+			}
+		}
+		return frontier;
+	}
+
+	private static List<Integer> positions(ParetoFrontier frontier) {
+		List<Integer> positions = new ArrayList<Integer>();
+		for (int i = 0; i < frontier.size(); i++) {
+			positions.add(frontier.getPosition(i));
+		}
+		return positions;
+	}
+
+	// The own utility falls and the opponent utility rises along the staircase
+	private static void assertStaircase(ParetoFrontier frontier) {
+		for (int i = 1; i < frontier.size(); i++) {
+			assertTrue(frontier.getUtility(i) < frontier.getUtility(i - 1));
+			assertTrue(frontier.getOpponentUtility(i) > frontier.getOpponentUtility(i - 1));
+		}
+	}
+
+	@Test
+	public void holdsTheOutcomesThatAreNotDominated() {
+		Random rng = new Random(20);
+		SyntheticDomain[] domains = { new SyntheticDomain(2, 3), new SyntheticDomain(3, 4),
+				new SyntheticDomain(4, 5) };
+		for (int run = 0; run < 30; run++) {
+			SyntheticDomain domain = domains[run % domains.length];
+			AdditiveUtilitySpace utilitySpace = domain.createUtilitySpace(rng);
+			NegotiationSession session = domain.createSession(utilitySpace, null, 100);
+			Group15_OM model = new Group15_OM();
+			model.init(session, null);
+			// Coarse utilities give ties in the own utility
+			UtilityIndex index = BidSelectorTest.createIndex(domain, rng);
+			ParetoFrontier frontier = new ParetoFrontier(index, model);
+
+			for (int step = 0; step < 8; step++) {
+				double[] opponentUtilities = new double[index.size()];
+				for (int i = 0; i < index.size(); i++) {
+					opponentUtilities[i] = model.getBidEvaluation(index.getBidDetails(i).getBid());
+				}
+				// The frontier is scanned deeper as the agent concedes
+				double lower = 1;
+				for (int q = 0; q < 5; q++) {
+					lower -= rng.nextDouble() * 0.3;
+					frontier.scanTo(lower);
+					assertStaircase(frontier);
+					assertEquals(bruteForce(index, opponentUtilities, lower), positions(frontier));
+
+					double upper = lower + rng.nextDouble() * 0.1;
+					for (int i = frontier.indexAtOrBelow(upper); i < frontier.indexBelow(lower); i++) {
+						assertTrue(frontier.getUtility(i) >= lower && frontier.getUtility(i) <= upper);
+					}
+					int inRange = 0;
+					for (int i = 0; i < frontier.size(); i++) {
+						if (frontier.getUtility(i) >= lower && frontier.getUtility(i) <= upper) {
+							inRange++;
+						}
+					}
+					assertEquals(inRange, frontier.indexBelow(lower) - frontier.indexAtOrBelow(upper));
+				}
+
+				// Change the model with a few sets of opponent bids
+				int generation = model.getGeneration();
+				while (model.getGeneration() < generation + 2) {
+					Bid bid = domain.getDomain().getRandomBid(rng);
+					session.getOpponentBidHistory().add(new BidDetails(bid, utilitySpace.getUtility(bid), 0.5));
+					model.updateModel(bid, 0.5);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package ai2018.group15;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import genius.core.Bid;
+import genius.core.Domain;
+import genius.core.DomainImpl;
+import genius.core.boaframework.NegotiationSession;
+import genius.core.boaframework.SessionData;
+import genius.core.issue.Issue;
+import genius.core.issue.IssueDiscrete;
+import genius.core.issue.Objective;
+import genius.core.timeline.DiscreteTimeline;
+import genius.core.timeline.TimeLineInfo;
+import genius.core.uncertainty.AdditiveUtilitySpaceFactory;
+import genius.core.uncertainty.BidRanking;
+import genius.core.uncertainty.UserModel;
+import genius.core.utility.AbstractUtilitySpace;
+import genius.core.utility.AdditiveUtilitySpace;
+
+/**
+ * Domain with a number of discrete issues which all have the same number of
+ * values, used to run the agent without domain and profile files. Utility
+ * spaces are generated randomly from a seed.
+ */
+public class SyntheticDomain {
+	private Domain domain;
+	private int issueCount;
+	private int valueCount;
+
+	public SyntheticDomain(int issueCount, int valueCount) {
+		this.issueCount = issueCount;
+		this.valueCount = valueCount;
+		DomainImpl domainImpl = new DomainImpl();
+		Objective root = new Objective(null, "root", 0);
+		for (int i = 0; i < issueCount; i++) {
+			String[] values = new String[valueCount];
+			for (int v = 0; v < valueCount; v++) {
+				values[v] = "v" + v;
+			}
+			root.addChild(new IssueDiscrete("issue" + (i + 1), i + 1, values));
+		}
+		domainImpl.setObjectivesRoot(root);
+		domain = domainImpl;
+	}
+
+	public Domain getDomain() {
+		return domain;
+	}
+
+	public int getIssueCount() {
+		return issueCount;
+	}
+
+	public int getValueCount() {
+		return valueCount;
+	}
+
+	/***
+	 * Returns the number of possible bids
+	 * 
+	 * @return number of possible bids
+	 */
+	public double getSize() {
+		return Math.pow(valueCount, issueCount);
+	}
+
+	/***
+	 * Creates a random additive utility space with normalized weights
+	 * 
+	 * @param rng random generator
+	 * @return utility space
+	 */
+	public AdditiveUtilitySpace createUtilitySpace(Random rng) {
+		AdditiveUtilitySpaceFactory factory = new AdditiveUtilitySpaceFactory(domain);
+		List<Issue> issues = domain.getIssues();
+		double[] weights = new double[issues.size()];
+		double weightSum = 0;
+		for (int i = 0; i < issues.size(); i++) {
+			IssueDiscrete issue = (IssueDiscrete) issues.get(i);
+			for (int v = 0; v < issue.getNumberOfValues(); v++) {
+				factory.setUtility(issue, issue.getValue(v), 0.01 + rng.nextDouble());
+			}
+			weights[i] = 0.1 + rng.nextDouble();
+			weightSum += weights[i];
+		}
+		for (int i = 0; i < weights.length; i++) {
+			weights[i] /= weightSum;
+		}
+		factory.getUtilitySpace().setWeights(issues, weights);
+		return factory.getUtilitySpace();
+	}
+
+	/***
+	 * Creates a user model ranking random bids by their utility
+	 * 
+	 * @param utilitySpace true utility space of the user
+	 * @param rankedBids   number of ranked bids
+	 * @param rng          random generator
+	 * @return user model
+	 */
+	public UserModel createUserModel(final AbstractUtilitySpace utilitySpace, int rankedBids, Random rng) {
+		List<Bid> bidOrder = new ArrayList<Bid>(rankedBids);
+		for (int i = 0; i < rankedBids; i++) {
+			bidOrder.add(domain.getRandomBid(rng));
+		}
+		// Bid rankings are ordered from low to high utility
+		Collections.sort(bidOrder, new Comparator<Bid>() {
+			@Override
+			public int compare(Bid a, Bid b) {
+				return Double.compare(utilitySpace.getUtility(a), utilitySpace.getUtility(b));
+			}
+		});
+		return new UserModel(new BidRanking(bidOrder, utilitySpace.getUtility(bidOrder.get(0)),
+				utilitySpace.getUtility(bidOrder.get(bidOrder.size() - 1))));
+	}
+
+	/***
+	 * Creates a negotiation session with a rounds based timeline
+	 * 
+	 * @param utilitySpace utility space of the agent
+	 * @param userModel    user model under preference uncertainty, or null
+	 * @param rounds       number of rounds of the session
+	 * @return negotiation session
+	 */
+	public NegotiationSession createSession(AbstractUtilitySpace utilitySpace, UserModel userModel, int rounds) {
+		TimeLineInfo timeline = new DiscreteTimeline(rounds);
+		return new NegotiationSession(new SessionData(), utilitySpace, timeline, null, userModel);
+	}
+}